@@ -1,10 +1,12 @@
 package bartek.fileorganizer;
 
 import bartek.fileorganizer.config.ConfigService;
-import bartek.fileorganizer.core.DirectoryWatcher;
-import bartek.fileorganizer.core.FileProcessor;
+import bartek.fileorganizer.control.ControlServer;
+import bartek.fileorganizer.core.Organizer;
 import bartek.fileorganizer.model.AppConfig;
+import bartek.fileorganizer.model.DurabilityPolicy;
 import bartek.fileorganizer.model.Rule;
+import bartek.fileorganizer.model.RuleAction;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
@@ -21,6 +23,7 @@ import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.layout.*;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import lombok.extern.slf4j.Slf4j;
 import org.kordamp.bootstrapfx.BootstrapFX;
@@ -34,13 +37,15 @@ import java.io.IOException;
 import java.net.URL;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 public class FileOrganizerApp extends Application {
 
-    private AppConfig currentConfig;
-    private Thread watcherThread;
+    private Organizer organizer;
+    private ControlServer controlServer;
     private Label pathLabel;
+    private TableView<Rule> rulesTable;
 
     private final ObservableList<String> eventsLog = FXCollections.observableArrayList();
 
@@ -48,11 +53,27 @@ public class FileOrganizerApp extends Application {
     public void init() {
         ConfigService configService = new ConfigService();
         try {
-            currentConfig = configService.loadConfig();
+            AppConfig currentConfig = configService.loadConfig();
             log.info("Loaded config for: {}", currentConfig.sourceDirectory());
             currentConfig.rules().forEach(config -> log.info("Rule: {} -> {}", config.extension(), config.nameContains()));
+
+            // The pipeline starts here, before start() builds the UI
+            organizer = new Organizer(configService, currentConfig);
+            organizer.addProgressListener(this::addEvent);
+            organizer.start();
         } catch (IOException e) {
             log.error("Failed to load configuration: {}", e.getMessage());
+            return;
+        }
+
+        int controlPort = organizer.config().controlPort();
+        if (controlPort > 0) {
+            try {
+                controlServer = new ControlServer(organizer, controlPort);
+                controlServer.start();
+            } catch (IOException e) {
+                log.error("Failed to start control API on port {}: {}", controlPort, e.getMessage());
+            }
         }
     }
 
@@ -63,11 +84,6 @@ public class FileOrganizerApp extends Application {
 
         BorderPane root = configureUI();
 
-
-        if (currentConfig != null) {
-            startDirectoryWatcher();
-        }
-
         Scene scene = new Scene(root, 700, 550);
         scene.getStylesheets().add(BootstrapFX.bootstrapFXStylesheet());
         String css = Objects.requireNonNull(getClass().getResource("/styles.css")).toExternalForm();
@@ -109,8 +125,18 @@ public class FileOrganizerApp extends Application {
         VBox settingsPane = new VBox(5);
         settingsPane.setPadding(new Insets(10));
 
-        optionsTab.setContent(buildOptionsView());
+        // Built on first view, large rule tables are expensive to create
         optionsTab.setClosable(false);
+        optionsTab.setOnSelectionChanged(e -> {
+            if (!optionsTab.isSelected()) {
+                return;
+            }
+            if (optionsTab.getContent() == null) {
+                optionsTab.setContent(buildOptionsView());
+            } else {
+                rulesTable.refresh();
+            }
+        });
         tabPane.getTabs().add(optionsTab);
 
         tabPane.setPadding(new Insets(10,0,0,0));
@@ -125,30 +151,14 @@ public class FileOrganizerApp extends Application {
         return root;
     }
 
-    private void startDirectoryWatcher() {
-
-        if (watcherThread != null && watcherThread.isAlive()) {
-            watcherThread.interrupt();
-            log.info("Stopped existing directory watcher thread");
-        }
-
-        if (currentConfig != null) {
-            DirectoryWatcher directoryWatcher = new DirectoryWatcher(currentConfig, msg ->
-            {
-                Platform.runLater(() -> {
-                    eventsLog.addFirst(msg);
+    private void addEvent(String msg) {
+        Platform.runLater(() -> {
+            eventsLog.addFirst(msg);
 
-                    if (eventsLog.size() > 100) {
-                        eventsLog.remove(100);
-                    }
-                });
-            });
-            watcherThread = new Thread(directoryWatcher);
-            watcherThread.setDaemon(true);
-            watcherThread.setName("Watcher-Thread");
-            watcherThread.start();
-            log.info("Started new directory watcher thread");
-        }
+            if (eventsLog.size() > 100) {
+                eventsLog.remove(100);
+            }
+        });
     }
 
     private void addToSystemTray(Stage stage) {
@@ -244,6 +254,7 @@ public class FileOrganizerApp extends Application {
     }
 
     private Node buildOptionsView() {
+        AppConfig currentConfig = organizer.config();
         VBox mainLayout = new VBox(20);
         mainLayout.setPadding(new Insets(20));
 
@@ -258,8 +269,15 @@ public class FileOrganizerApp extends Application {
 
         VBox sourceFolderSection = createSection("Source folder", folderControls);
 
+        CheckBox adaptiveCheckBox = new CheckBox("Reorder independent rules by hit frequency");
+        adaptiveCheckBox.setSelected(currentConfig.adaptiveRuleOrdering());
+
+        ComboBox<DurabilityPolicy> durabilityBox = new ComboBox<>(FXCollections.observableArrayList(DurabilityPolicy.values()));
+        durabilityBox.setValue(currentConfig.durabilityPolicy());
+        HBox durabilityControls = new HBox(10, new Label("Sync after move:"), durabilityBox);
+
         //Section 2 - Rules List
-        TableView<Rule> rulesTable = new TableView<>();
+        rulesTable = new TableView<>();
         rulesTable.setPrefHeight(200);
         rulesTable.setItems(FXCollections.observableArrayList(currentConfig.rules()));
         rulesTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
@@ -275,16 +293,26 @@ public class FileOrganizerApp extends Application {
         TableColumn<Rule, String> targetCol = new TableColumn<>("Target Folder");
         targetCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().targetFolder()));
 
-        rulesTable.getColumns().addAll(extCol, nameCol, targetCol);
+        TableColumn<Rule, String> actionCol = new TableColumn<>("Action");
+        actionCol.setCellValueFactory(data -> new SimpleStringProperty(data.getValue().action().name()));
+
+        TableColumn<Rule, String> hitsCol = new TableColumn<>("Hits");
+        hitsCol.setCellValueFactory(data -> new SimpleStringProperty(formatCounter(organizer.ruleMatcher().hits(data.getValue()))));
+
+        TableColumn<Rule, String> missesCol = new TableColumn<>("Misses");
+        missesCol.setCellValueFactory(data -> new SimpleStringProperty(formatCounter(organizer.ruleMatcher().misses(data.getValue()))));
+
+        rulesTable.getColumns().addAll(extCol, nameCol, targetCol, actionCol, hitsCol, missesCol);
 
         VBox rulesSection = createSection("Manage Rules", rulesTable);
         rulesSection.setPadding(new Insets(10));
         Button addRuleBtn = getAddRuleButton(rulesTable);
         Button removeRuleBtn = getRemoveRuleButton(rulesTable);
-        Button saveBtn = getSaveConfigButton(pathField, rulesTable);
+        Button saveBtn = getSaveConfigButton(pathField, rulesTable, adaptiveCheckBox, durabilityBox);
         Button scanExistingBtn = getCleanNowButton();
-        HBox rulesButtons = new HBox(10, addRuleBtn, removeRuleBtn, saveBtn,scanExistingBtn);
-        rulesSection.getChildren().add(rulesButtons);
+        Button exportStatsBtn = getExportStatsButton();
+        HBox rulesButtons = new HBox(10, addRuleBtn, removeRuleBtn, saveBtn,scanExistingBtn, exportStatsBtn);
+        rulesSection.getChildren().addAll(adaptiveCheckBox, durabilityControls, rulesButtons);
 
 
         mainLayout.getChildren().addAll(sourceFolderSection, rulesSection);
@@ -316,25 +344,11 @@ public class FileOrganizerApp extends Application {
         scanBtn.setOnAction(
                 e -> {
                     scanBtn.setDisable(true);
-                    FileProcessor tempProcessor = new FileProcessor(currentConfig, msg -> {
-                        Platform.runLater(() -> {
-                            eventsLog.addFirst(msg);
-                            if (eventsLog.size() > 100) {
-                                eventsLog.remove(100);
-                            }
-                        });
-                    });
-
-                    Thread scanThread = new Thread(() -> {
-                        tempProcessor.scanExistingFiles();
-                        Platform.runLater(() -> {
-                            scanBtn.setDisable(false);
+                    organizer.scanNow().whenComplete((result, error) -> Platform.runLater(() -> {
+                        scanBtn.setDisable(false);
 
-                            showStyledAlert(Alert.AlertType.INFORMATION, "Scan", "Cleaning complete!");
-                        });
-                    });
-                    scanThread.setDaemon(true);
-                    scanThread.start();
+                        showStyledAlert(Alert.AlertType.INFORMATION, "Scan", "Cleaning complete!");
+                    }));
                 }
 
         );
@@ -366,6 +380,8 @@ public class FileOrganizerApp extends Application {
                     nameField.setPromptText("np. invoice");
                     TextField folderField = new TextField();
                     folderField.setPromptText("np. documents");
+                    ComboBox<RuleAction> actionBox = new ComboBox<>(FXCollections.observableArrayList(RuleAction.values()));
+                    actionBox.setValue(RuleAction.MOVE);
 
                     grid.add(new Label("Extension:"), 0, 0);
                     grid.add(extField, 1, 0);
@@ -373,6 +389,8 @@ public class FileOrganizerApp extends Application {
                     grid.add(nameField, 1, 1);
                     grid.add(new Label("Target folder:"), 0, 2);
                     grid.add(folderField, 1, 2);
+                    grid.add(new Label("Action:"), 0, 3);
+                    grid.add(actionBox, 1, 3);
 
                     dialog.getDialogPane().setContent(grid);
 
@@ -397,7 +415,7 @@ public class FileOrganizerApp extends Application {
                             } else {
                                 String finalExt = ext.isEmpty() ? null : ext;
                                 String finalName = name.isEmpty() ? null : name;
-                                return new Rule(finalExt, folder, finalName);
+                                return new Rule(finalExt, folder, finalName, actionBox.getValue());
                             }
                         }
                         return null;
@@ -434,7 +452,37 @@ public class FileOrganizerApp extends Application {
         return removeBtn;
     }
 
-    private Button getSaveConfigButton(TextField pathField, TableView<Rule> rulesTable) {
+    private Button getExportStatsButton() {
+        Button exportBtn = new Button("Export Stats");
+        exportBtn.getStyleClass().addAll("btn", "btn-secondary");
+        exportBtn.setOnAction(
+                e -> {
+                    FileChooser fileChooser = new FileChooser();
+                    fileChooser.setTitle("Export Rule Statistics");
+                    fileChooser.setInitialFileName("rule_statistics.csv");
+                    fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV", "*.csv"));
+                    File selectedFile = fileChooser.showSaveDialog(null);
+                    if (selectedFile == null) {
+                        return;
+                    }
+                    try {
+                        organizer.ruleMatcher().exportStatistics(selectedFile.toPath());
+                        showStyledAlert(Alert.AlertType.INFORMATION, "Export", "Rule statistics exported!");
+                    } catch (IOException ex) {
+                        log.error("Failed to export rule statistics", ex);
+                        showStyledAlert(Alert.AlertType.ERROR, "Error", "Rule statistics export failed!");
+                    }
+                }
+        );
+        return exportBtn;
+    }
+
+    private static String formatCounter(long value) {
+        return value < 0 ? "-" : String.valueOf(value);
+    }
+
+    private Button getSaveConfigButton(TextField pathField, TableView<Rule> rulesTable, CheckBox adaptiveCheckBox,
+                                       ComboBox<DurabilityPolicy> durabilityBox) {
         Button saveBtn = new Button("Save & Apply");
         saveBtn.getStyleClass().addAll("btn", "btn-primary");
         saveBtn.setGraphic(new Label("💾"));
@@ -442,29 +490,30 @@ public class FileOrganizerApp extends Application {
 
         saveBtn.setOnAction(
                 e -> {
-                    try {
-                        String newPath = pathField.getText().trim();
-
-                        List<Rule> newRules = List.copyOf(rulesTable.getItems());
-
-                        AppConfig newConfig = new AppConfig(newPath, newRules);
-
-                        ConfigService configService = new ConfigService();
-                        configService.saveConfig(newConfig);
-
-
-                        this.currentConfig = newConfig;
-
-                        updatePathLabel();
-                        this.startDirectoryWatcher();
-
-                        showStyledAlert(Alert.AlertType.INFORMATION, "Success", "Configuration saved and watcher restarted!");
-
-                    } catch (IOException ex) {
-                        log.error("Failed to save config", ex);
-                        showStyledAlert(Alert.AlertType.ERROR, "Error", "Configuration save failed!");
-
-                    }
+                    String newPath = pathField.getText().trim();
+
+                    List<Rule> newRules = List.copyOf(rulesTable.getItems());
+
+                    AppConfig currentConfig = organizer.config();
+                    AppConfig newConfig = new AppConfig(newPath, newRules, adaptiveCheckBox.isSelected(), durabilityBox.getValue(),
+                            currentConfig.eventLogOverflow(), currentConfig.controlPort(), currentConfig.schedule(),
+                            currentConfig.coordination(), currentConfig.ignore());
+
+                    // Applying waits for a running move to finish, which must not freeze the window
+                    saveBtn.setDisable(true);
+                    organizer.applyConfigAsync(newConfig).whenComplete((result, error) -> Platform.runLater(() -> {
+                        saveBtn.setDisable(false);
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        if (cause == null) {
+                            updatePathLabel();
+                            showStyledAlert(Alert.AlertType.INFORMATION, "Success", "Configuration saved and watcher restarted!");
+                        } else if (cause instanceof IllegalArgumentException) {
+                            showStyledAlert(Alert.AlertType.ERROR, "Invalid configuration", cause.getMessage());
+                        } else {
+                            log.error("Failed to save config", cause);
+                            showStyledAlert(Alert.AlertType.ERROR, "Error", "Configuration save failed!");
+                        }
+                    }));
                 }
         );
         return saveBtn;
@@ -472,7 +521,7 @@ public class FileOrganizerApp extends Application {
 
     private void updatePathLabel() {
         if (pathLabel != null) {
-            String dir = (currentConfig != null) ? currentConfig.sourceDirectory() : "Not set";
+            String dir = (organizer != null) ? organizer.config().sourceDirectory() : "Not set";
             pathLabel.setText("Watching folder: " + dir);
         }
     }
@@ -499,5 +548,11 @@ public class FileOrganizerApp extends Application {
     @Override
     public void stop() {
         log.info("Stopping application");
+        if (controlServer != null) {
+            controlServer.close();
+        }
+        if (organizer != null) {
+            organizer.close();
+        }
     }
 }
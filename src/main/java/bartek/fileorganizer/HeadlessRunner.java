@@ -0,0 +1,61 @@
+package bartek.fileorganizer;
+
+import bartek.fileorganizer.config.ConfigService;
+import bartek.fileorganizer.control.ControlServer;
+import bartek.fileorganizer.core.Organizer;
+import bartek.fileorganizer.model.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the watcher pipeline and the control API without JavaFX, for scripted use.
+ */
+@Slf4j
+public class HeadlessRunner {
+
+    static void run() {
+        ConfigService configService = new ConfigService();
+        AppConfig config;
+        try {
+            config = configService.loadConfig();
+        } catch (IOException e) {
+            log.error("Failed to load configuration: {}", e.getMessage());
+            return;
+        }
+
+        Organizer organizer = new Organizer(configService, config);
+        organizer.addProgressListener(msg -> log.info("{}", msg));
+        organizer.start();
+
+        ControlServer controlServer = null;
+        if (config.controlPort() > 0) {
+            try {
+                controlServer = new ControlServer(organizer, config.controlPort());
+                controlServer.start();
+            } catch (IOException e) {
+                log.error("Failed to start control API on port {}: {}", config.controlPort(), e.getMessage());
+            }
+        } else {
+            log.warn("controlPort is not set, running the watcher only");
+        }
+
+        CountDownLatch shutdown = new CountDownLatch(1);
+        ControlServer server = controlServer;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            log.info("Stopping headless organizer");
+            if (server != null) {
+                server.close();
+            }
+            organizer.close();
+            shutdown.countDown();
+        }));
+
+        try {
+            shutdown.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
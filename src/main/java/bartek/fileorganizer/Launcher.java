@@ -2,8 +2,14 @@ package bartek.fileorganizer;
 
 import javafx.application.Application;
 
+import java.util.Arrays;
+
 public class Launcher {
     static void main(String[] args) {
+        if (Arrays.asList(args).contains("--headless")) {
+            HeadlessRunner.run();
+            return;
+        }
         Application.launch(FileOrganizerApp.class, args);
     }
 }
@@ -1,6 +1,7 @@
 package bartek.fileorganizer.config;
 
 import bartek.fileorganizer.model.AppConfig;
+import bartek.fileorganizer.model.Rule;
 import com.sun.jna.platform.win32.KnownFolders;
 import com.sun.jna.platform.win32.Ole32;
 import com.sun.jna.platform.win32.Shell32;
@@ -8,6 +9,8 @@ import com.sun.jna.platform.win32.WinNT;
 import com.sun.jna.ptr.PointerByReference;
 import javafx.application.Platform;
 import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.DeserializationFeature;
 import tools.jackson.databind.ObjectMapper;
 import tools.jackson.databind.SerializationFeature;
 import tools.jackson.databind.json.JsonMapper;
@@ -16,24 +19,97 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Collections;
+import java.util.Optional;
 
 
 @Slf4j
 public class ConfigService {
 
-    private static final Path CONFIG_PATH = Paths.get(System.getProperty("user.home"), ".fileorganizer", "organizer_config.json");
-    private final ObjectMapper mapper;
+    // fileorganizer.home allows several instances with their own config on one machine
+    private static final Path CONFIG_PATH = Paths.get(
+            System.getProperty("fileorganizer.home", Paths.get(System.getProperty("user.home"), ".fileorganizer").toString()),
+            "organizer_config.json");
+    private static final Path SNAPSHOT_PATH = CONFIG_PATH.resolveSibling("organizer_config.snapshot");
+
+    // Created on first use, a valid snapshot lets startup skip Jackson entirely
+    private ObjectMapper mapper;
+
+    public static ObjectMapper newMapper() {
+        // Settings added in later versions are missing from older config files
+        return JsonMapper.builder()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .disable(DeserializationFeature.FAIL_ON_NULL_FOR_PRIMITIVES)
+                .build();
+    }
 
-    public ConfigService() {
-        this.mapper = JsonMapper.builder().enable(SerializationFeature.INDENT_OUTPUT).build();
+    public static Path dataDirectory() {
+        return CONFIG_PATH.getParent();
     }
 
     public AppConfig loadConfig() throws IOException {
         if (!Files.exists(CONFIG_PATH)) {
             return createDefaultConfig();
         }
-        return mapper.readValue(CONFIG_PATH.toFile(), AppConfig.class);
+
+        try {
+            Optional<AppConfig> snapshot = ConfigSnapshot.read(SNAPSHOT_PATH, CONFIG_PATH);
+            if (snapshot.isPresent()) {
+                log.info("Loaded config from snapshot");
+                return snapshot.get();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Ignoring unreadable config snapshot: {}", e.getMessage());
+        }
+
+        AppConfig config;
+        try {
+            config = mapper().readValue(CONFIG_PATH.toFile(), AppConfig.class);
+            validate(config);
+        } catch (JacksonException | IllegalArgumentException e) {
+            throw new IOException("Invalid configuration in " + CONFIG_PATH + ": " + e.getMessage(), e);
+        }
+        writeSnapshot(config);
+        return config;
+    }
+
+    private synchronized ObjectMapper mapper() {
+        if (mapper == null) {
+            mapper = newMapper();
+        }
+        return mapper;
+    }
+
+    /**
+     * Rejects configurations the pipeline cannot run with, before they reach the disk.
+     */
+    public static void validate(AppConfig config) {
+        if (config.sourceDirectory() == null || config.sourceDirectory().isBlank()) {
+            throw new IllegalArgumentException("sourceDirectory is required");
+        }
+        for (Rule rule : config.rules()) {
+            if (rule == null || rule.targetFolder() == null || rule.targetFolder().isBlank()) {
+                throw new IllegalArgumentException("Every rule needs a targetFolder");
+            }
+        }
+        if (config.controlPort() < 0 || config.controlPort() > 65535) {
+            throw new IllegalArgumentException("controlPort must be between 0 and 65535");
+        }
+        if (config.coordination() != null) {
+            if (config.coordination().leaseDirectory() == null || config.coordination().leaseDirectory().isBlank()) {
+                throw new IllegalArgumentException("coordination.leaseDirectory is required");
+            }
+            if (config.coordination().shardIndex() < 0 || config.coordination().shardIndex() >= config.coordination().shardCount()) {
+                throw new IllegalArgumentException("coordination.shardIndex must be between 0 and shardCount - 1");
+            }
+        }
+    }
+
+    private void writeSnapshot(AppConfig config) {
+        try {
+            ConfigSnapshot.write(SNAPSHOT_PATH, CONFIG_PATH, config);
+        } catch (IOException e) {
+            log.warn("Error writing config snapshot: {}", e.getMessage());
+        }
     }
 
     private AppConfig createDefaultConfig() {
@@ -41,7 +117,7 @@ public class ConfigService {
 
         Path downloads = getDownloadsFolder();
 
-        AppConfig config = new AppConfig(downloads.toString(), Collections.emptyList());
+        AppConfig config = AppConfig.defaults(downloads.toString());
 
 
         if(!Files.exists(CONFIG_PATH.getParent())) {
@@ -52,7 +128,7 @@ public class ConfigService {
             }
         }
 
-        mapper.writeValue(CONFIG_PATH.toFile(), config);
+        mapper().writeValue(CONFIG_PATH.toFile(), config);
 
         return config;
     }
@@ -135,7 +211,9 @@ public class ConfigService {
     }
 
     public void saveConfig(AppConfig config) throws IOException {
-        mapper.writeValue(CONFIG_PATH.toFile(), config);
+        validate(config);
+        mapper().writeValue(CONFIG_PATH.toFile(), config);
+        writeSnapshot(config);
     }
 
 }
@@ -0,0 +1,171 @@
+package bartek.fileorganizer.config;
+
+import bartek.fileorganizer.model.AppConfig;
+import bartek.fileorganizer.model.CoordinationPolicy;
+import bartek.fileorganizer.model.DurabilityPolicy;
+import bartek.fileorganizer.model.IgnorePolicy;
+import bartek.fileorganizer.model.OverflowPolicy;
+import bartek.fileorganizer.model.Rule;
+import bartek.fileorganizer.model.RuleAction;
+import bartek.fileorganizer.model.SchedulePolicy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Binary copy of the JSON config, read at startup instead of parsing JSON.
+ * It records the modification time and size of the JSON file it was built from and is ignored
+ * as soon as either changes. {@link #FORMAT_VERSION} must be bumped whenever {@link AppConfig} changes.
+ */
+final class ConfigSnapshot {
+
+    private static final int MAGIC = 0x464F5253;
+    private static final int FORMAT_VERSION = 3;
+
+    private ConfigSnapshot() {
+    }
+
+    static Optional<AppConfig> read(Path snapshotFile, Path jsonFile) throws IOException {
+        if (!Files.exists(snapshotFile)) {
+            return Optional.empty();
+        }
+        BasicFileAttributes jsonAttributes = Files.readAttributes(jsonFile, BasicFileAttributes.class);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION
+                    || in.readLong() != jsonAttributes.lastModifiedTime().toMillis()
+                    || in.readLong() != jsonAttributes.size()) {
+                return Optional.empty();
+            }
+            return Optional.of(readConfig(in));
+        }
+    }
+
+    static void write(Path snapshotFile, Path jsonFile, AppConfig config) throws IOException {
+        BasicFileAttributes jsonAttributes = Files.readAttributes(jsonFile, BasicFileAttributes.class);
+        Path tempFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(jsonAttributes.lastModifiedTime().toMillis());
+            out.writeLong(jsonAttributes.size());
+            writeConfig(out, config);
+        }
+        Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeConfig(DataOutputStream out, AppConfig config) throws IOException {
+        writeString(out, config.sourceDirectory());
+        out.writeInt(config.rules().size());
+        for (Rule rule : config.rules()) {
+            writeString(out, rule.extension());
+            writeString(out, rule.targetFolder());
+            writeString(out, rule.nameContains());
+            out.writeUTF(rule.action().name());
+        }
+        out.writeBoolean(config.adaptiveRuleOrdering());
+        out.writeUTF(config.durabilityPolicy().name());
+        out.writeUTF(config.eventLogOverflow().name());
+        out.writeInt(config.controlPort());
+
+        SchedulePolicy schedule = config.schedule();
+        out.writeBoolean(schedule != null);
+        if (schedule != null) {
+            writeStrings(out, schedule.heavyMoveWindows());
+            out.writeLong(schedule.heavyFileBytes());
+            out.writeDouble(schedule.maxFilesPerSecond());
+            out.writeLong(schedule.maxBytesPerSecond());
+        }
+
+        CoordinationPolicy coordination = config.coordination();
+        out.writeBoolean(coordination != null);
+        if (coordination != null) {
+            writeString(out, coordination.leaseDirectory());
+            writeString(out, coordination.instanceId());
+            out.writeInt(coordination.shardCount());
+            out.writeInt(coordination.shardIndex());
+            out.writeLong(coordination.leaseTimeoutSeconds());
+        }
+
+        IgnorePolicy ignore = config.ignore();
+        out.writeBoolean(ignore != null);
+        if (ignore != null) {
+            writeStrings(out, ignore.globs());
+            writeStrings(out, ignore.prefixes());
+            writeStrings(out, ignore.suffixes());
+            out.writeLong(ignore.minSizeBytes());
+            out.writeLong(ignore.maxSizeBytes());
+            out.writeLong(ignore.maxAgeSeconds());
+            out.writeBoolean(ignore.disableDefaults());
+        }
+    }
+
+    private static AppConfig readConfig(DataInputStream in) throws IOException {
+        String sourceDirectory = readString(in);
+        int ruleCount = in.readInt();
+        List<Rule> rules = new ArrayList<>(ruleCount);
+        for (int i = 0; i < ruleCount; i++) {
+            rules.add(new Rule(readString(in), readString(in), readString(in), RuleAction.valueOf(in.readUTF())));
+        }
+        boolean adaptiveRuleOrdering = in.readBoolean();
+        DurabilityPolicy durabilityPolicy = DurabilityPolicy.valueOf(in.readUTF());
+        OverflowPolicy eventLogOverflow = OverflowPolicy.valueOf(in.readUTF());
+        int controlPort = in.readInt();
+
+        SchedulePolicy schedule = null;
+        if (in.readBoolean()) {
+            schedule = new SchedulePolicy(readStrings(in), in.readLong(), in.readDouble(), in.readLong());
+        }
+
+        CoordinationPolicy coordination = null;
+        if (in.readBoolean()) {
+            coordination = new CoordinationPolicy(readString(in), readString(in), in.readInt(), in.readInt(), in.readLong());
+        }
+
+        IgnorePolicy ignore = null;
+        if (in.readBoolean()) {
+            ignore = new IgnorePolicy(readStrings(in), readStrings(in), readStrings(in),
+                    in.readLong(), in.readLong(), in.readLong(), in.readBoolean());
+        }
+        return new AppConfig(sourceDirectory, rules, adaptiveRuleOrdering, durabilityPolicy, eventLogOverflow,
+                controlPort, schedule, coordination, ignore);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+}
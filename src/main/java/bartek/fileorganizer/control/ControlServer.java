@@ -0,0 +1,256 @@
+package bartek.fileorganizer.control;
+
+import bartek.fileorganizer.config.ConfigService;
+import bartek.fileorganizer.core.Organizer;
+import bartek.fileorganizer.model.AppConfig;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Local HTTP control endpoint bound to the loopback interface.
+ * Every request must carry the per-install token from {@code control.token} in the data directory
+ * as {@value #TOKEN_HEADER}. Browser requests (with an {@code Origin}) and non-loopback {@code Host}s are refused.
+ *
+ * <pre>
+ * GET  /status    - source folder, rule count and dropped events
+ * POST /scan      - scan the source folder (like "Clean Now")
+ * POST /process   - process the paths given in the body, one per line (files in the source folder only)
+ * GET  /config    - current configuration
+ * PUT  /config    - save and apply a new configuration (like "Save &amp; Apply")
+ * GET  /stats     - rule hit/miss statistics as CSV
+ * GET  /progress  - progress messages as a server-sent event stream
+ * </pre>
+ */
+@Slf4j
+public class ControlServer implements AutoCloseable {
+
+    private static final int PROGRESS_QUEUE_SIZE = 1024;
+    private static final long HEARTBEAT_SECONDS = 15;
+    static final String TOKEN_HEADER = "X-Organizer-Token";
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("127.0.0.1", "localhost", "[::1]");
+
+    private final Organizer organizer;
+    private final ObjectMapper mapper = ConfigService.newMapper();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final HttpServer server;
+    private final byte[] token;
+
+    public ControlServer(Organizer organizer, int port) throws IOException {
+        this.organizer = organizer;
+        this.token = ControlToken.loadOrCreate(ConfigService.dataDirectory()).getBytes(StandardCharsets.US_ASCII);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        Filter access = new AccessFilter();
+        server.createContext("/status", this::handleStatus).getFilters().add(access);
+        server.createContext("/scan", this::handleScan).getFilters().add(access);
+        server.createContext("/process", this::handleProcess).getFilters().add(access);
+        server.createContext("/config", this::handleConfig).getFilters().add(access);
+        server.createContext("/stats", this::handleStats).getFilters().add(access);
+        server.createContext("/progress", this::handleProgress).getFilters().add(access);
+    }
+
+    public void start() {
+        server.start();
+        log.info("Control API listening on {}", server.getAddress());
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        AppConfig config = organizer.config();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("sourceDirectory", config.sourceDirectory());
+        status.put("rules", config.rules().size());
+        status.put("droppedEvents", organizer.eventLog().droppedEvents());
+        sendJson(exchange, 200, status);
+    }
+
+    private void handleScan(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "POST")) {
+            return;
+        }
+        organizer.scanNow();
+        sendJson(exchange, 202, Map.of("status", "scan started"));
+    }
+
+    private void handleProcess(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "POST")) {
+            return;
+        }
+        List<Path> paths = new ArrayList<>();
+        try (InputStream body = exchange.getRequestBody()) {
+            for (String line : new String(body.readAllBytes(), StandardCharsets.UTF_8).split("\\R")) {
+                if (!line.isBlank()) {
+                    paths.add(Path.of(line.trim()));
+                }
+            }
+        } catch (InvalidPathException e) {
+            sendJson(exchange, 400, Map.of("error", e.getMessage()));
+            return;
+        }
+        try {
+            organizer.processPaths(paths);
+        } catch (IllegalArgumentException e) {
+            sendJson(exchange, 400, Map.of("error", e.getMessage()));
+            return;
+        }
+        sendJson(exchange, 202, Map.of("accepted", paths.size()));
+    }
+
+    private void handleConfig(HttpExchange exchange) throws IOException {
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> sendJson(exchange, 200, organizer.config());
+            case "PUT" -> {
+                AppConfig newConfig;
+                try (InputStream body = exchange.getRequestBody()) {
+                    newConfig = mapper.readValue(body, AppConfig.class);
+                } catch (JacksonException e) {
+                    sendJson(exchange, 400, Map.of("error", "Invalid configuration: " + e.getOriginalMessage()));
+                    return;
+                }
+                try {
+                    organizer.applyConfig(newConfig);
+                } catch (IllegalArgumentException e) {
+                    sendJson(exchange, 400, Map.of("error", "Invalid configuration: " + e.getMessage()));
+                    return;
+                }
+                sendJson(exchange, 200, newConfig);
+            }
+            default -> sendJson(exchange, 405, Map.of("error", "Method not allowed"));
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        StringWriter csv = new StringWriter();
+        organizer.ruleMatcher().writeStatistics(csv);
+        send(exchange, 200, "text/csv", csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleProgress(HttpExchange exchange) throws IOException {
+        if (!requireMethod(exchange, "GET")) {
+            return;
+        }
+        // The pipeline only offers to this queue, a slow client loses messages instead of blocking it
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(PROGRESS_QUEUE_SIZE);
+        Consumer<String> listener = queue::offer;
+        organizer.addProgressListener(listener);
+
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+
+        try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                String message = queue.poll(HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                writer.write(message == null ? ":\n\n" : "data: " + message.replace("\n", " ") + "\n\n");
+                writer.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.debug("Progress client disconnected: {}", e.getMessage());
+        } finally {
+            organizer.removeProgressListener(listener);
+        }
+    }
+
+    /**
+     * Rejects requests that did not come from a local client holding the token.
+     */
+    private class AccessFilter extends Filter {
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            Headers headers = exchange.getRequestHeaders();
+            if (headers.containsKey("Origin") || !isLoopbackHost(headers.getFirst("Host"))) {
+                exchange.getRequestBody().close();
+                sendJson(exchange, 403, Map.of("error", "Forbidden"));
+                return;
+            }
+            String presented = headers.getFirst(TOKEN_HEADER);
+            if (presented == null
+                    || !MessageDigest.isEqual(token, presented.strip().getBytes(StandardCharsets.US_ASCII))) {
+                exchange.getRequestBody().close();
+                sendJson(exchange, 401, Map.of("error", "Missing or wrong " + TOKEN_HEADER));
+                return;
+            }
+            chain.doFilter(exchange);
+        }
+
+        @Override
+        public String description() {
+            return "Origin, Host and token check";
+        }
+    }
+
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        int portStart = host.lastIndexOf(':');
+        if (portStart > host.lastIndexOf(']')) {
+            host = host.substring(0, portStart);
+        }
+        return LOOPBACK_HOSTS.contains(host.toLowerCase(Locale.ROOT));
+    }
+
+    private boolean requireMethod(HttpExchange exchange, String method) throws IOException {
+        if (method.equals(exchange.getRequestMethod())) {
+            return true;
+        }
+        sendJson(exchange, 405, Map.of("error", "Method not allowed"));
+        return false;
+    }
+
+    private void sendJson(HttpExchange exchange, int status, Object body) throws IOException {
+        send(exchange, status, "application/json", mapper.writeValueAsBytes(body));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+}
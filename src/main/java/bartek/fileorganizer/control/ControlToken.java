@@ -0,0 +1,60 @@
+package bartek.fileorganizer.control;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Set;
+
+/**
+ * Per-install secret the control API expects in every request, so other local users and
+ * web pages cannot drive it. Only the owner can read the file holding it.
+ */
+final class ControlToken {
+
+    static final String FILE_NAME = "control.token";
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+    private static final int TOKEN_BYTES = 32;
+
+    private ControlToken() {
+    }
+
+    static String loadOrCreate(Path dataDirectory) throws IOException {
+        Path file = dataDirectory.resolve(FILE_NAME);
+        Files.createDirectories(dataDirectory);
+        boolean posix = Files.getFileAttributeView(dataDirectory, PosixFileAttributeView.class) != null;
+
+        if (Files.notExists(file)) {
+            byte[] bytes = new byte[TOKEN_BYTES];
+            new SecureRandom().nextBytes(bytes);
+            // Written in full before it gets its name, so no reader ever sees a partial token
+            Path temp = posix
+                    ? Files.createTempFile(dataDirectory, FILE_NAME + ".", ".tmp",
+                            PosixFilePermissions.asFileAttribute(OWNER_ONLY))
+                    : Files.createTempFile(dataDirectory, FILE_NAME + ".", ".tmp");
+            try {
+                Files.writeString(temp, HexFormat.of().formatHex(bytes), StandardCharsets.US_ASCII);
+                // If another instance raced us here, the last complete token wins and is read back below
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        if (posix && !Files.getPosixFilePermissions(file).equals(OWNER_ONLY)) {
+            Files.setPosixFilePermissions(file, OWNER_ONLY);
+        }
+        String token = Files.readString(file, StandardCharsets.US_ASCII).strip();
+        if (token.isEmpty()) {
+            throw new IOException("Empty control token in " + file);
+        }
+        return token;
+    }
+}
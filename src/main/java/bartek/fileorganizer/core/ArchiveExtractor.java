@@ -0,0 +1,158 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.Rule;
+import bartek.fileorganizer.model.RuleAction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams archive entries straight to the targets of their matching rules, one fixed-size buffer at a time.
+ * Each entry is written to a hidden partial file next to its target and renamed once complete.
+ * Entries without a matching rule go to a folder named after the archive inside the extract rule's target.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ArchiveExtractor {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private final Path sourceDirectory;
+    private final RuleMatcher ruleMatcher;
+    private final EventLog eventLog;
+    private final Consumer<String> uiCallback;
+
+    public static boolean isSupported(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz");
+    }
+
+    public int extract(Path archive, Rule archiveRule) throws IOException {
+        String archiveName = archive.getFileName().toString();
+        Path fallbackDir = sourceDirectory.resolve(archiveRule.targetFolder()).resolve(baseName(archiveName));
+        Set<Path> createdDirs = new HashSet<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int extracted = 0;
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(archive), BUFFER_SIZE)) {
+            String lowerName = archiveName.toLowerCase(Locale.ROOT);
+            if (lowerName.endsWith(".zip")) {
+                ZipInputStream zip = new ZipInputStream(in);
+                ZipEntry entry;
+                while ((entry = zip.getNextEntry()) != null) {
+                    if (!entry.isDirectory() && writeEntry(entry.getName(), zip, fallbackDir, createdDirs, buffer)) {
+                        extracted++;
+                    }
+                }
+            } else {
+                InputStream tarStream = lowerName.endsWith(".tar") ? in : new GZIPInputStream(in, BUFFER_SIZE);
+                TarReader tar = new TarReader(tarStream);
+                String entryName;
+                while ((entryName = tar.nextEntry()) != null) {
+                    if (writeEntry(entryName, tar.entryStream(), fallbackDir, createdDirs, buffer)) {
+                        extracted++;
+                    }
+                }
+            }
+        }
+
+        log.info("Extracted {} entries from {}", extracted, archive);
+        uiCallback.accept("Extracted " + extracted + " files from " + archiveName);
+        return extracted;
+    }
+
+    private boolean writeEntry(String entryName, InputStream content, Path fallbackDir, Set<Path> createdDirs, byte[] buffer) throws IOException {
+        // Entries are flattened to their file name; both separators count, as Windows archives use '\\'
+        String fileName = entryName.substring(Math.max(entryName.lastIndexOf('/'), entryName.lastIndexOf('\\')) + 1);
+        if (fileName.isEmpty() || fileName.equals(".") || fileName.equals("..")) {
+            log.warn("Skipping archive entry {}: no usable file name", entryName);
+            return false;
+        }
+
+        Path targetDir = ruleMatcher.match(fileName)
+                .filter(rule -> rule.action() != RuleAction.EXTRACT)
+                .map(rule -> sourceDirectory.resolve(rule.targetFolder()))
+                .orElse(fallbackDir);
+        if (createdDirs.add(targetDir)) {
+            Files.createDirectories(targetDir);
+        }
+
+        // Not Files.createTempFile, its owner-only permissions would stick to the extracted file
+        Path tempFile;
+        try {
+            tempFile = targetDir.resolve("." + fileName + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + PARTIAL_SUFFIX);
+            if (!isDirectlyIn(tempFile, targetDir) || !isDirectlyIn(targetDir.resolve(fileName), targetDir)) {
+                // Whatever the platform still reads as a path (a drive prefix, say) must not escape the target
+                log.warn("Skipping archive entry {}: name resolves outside {}", entryName, targetDir);
+                return false;
+            }
+        } catch (InvalidPathException e) {
+            log.warn("Skipping archive entry {}: {}", entryName, e.getMessage());
+            return false;
+        }
+        OutputStream tempOut = Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW);
+        Path targetFile;
+        try {
+            try (OutputStream out = tempOut) {
+                int read;
+                while ((read = content.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            }
+            targetFile = BatchMoveExecutor.uniqueTarget(targetDir, fileName);
+            while (true) {
+                if (!isDirectlyIn(targetFile, targetDir)) {
+                    throw new IOException("Archive entry " + entryName + " resolves outside " + targetDir);
+                }
+                try {
+                    Files.move(tempFile, targetFile);
+                    break;
+                } catch (FileAlreadyExistsException e) {
+                    // Taken by a concurrent extraction or move meanwhile, pick the next free name
+                    targetFile = BatchMoveExecutor.uniqueTarget(targetDir, fileName);
+                }
+            }
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tempFile);
+            } catch (IOException deleteFailure) {
+                e.addSuppressed(deleteFailure);
+            }
+            throw e;
+        }
+        eventLog.record(EventLog.Type.EXTRACTED, entryName, targetFile.toString());
+        return true;
+    }
+
+    private static boolean isDirectlyIn(Path file, Path directory) {
+        return directory.normalize().equals(file.normalize().getParent());
+    }
+
+    private static String baseName(String archiveName) {
+        String lowerName = archiveName.toLowerCase(Locale.ROOT);
+        for (String suffix : new String[]{".tar.gz", ".tgz", ".tar", ".zip"}) {
+            if (lowerName.endsWith(suffix)) {
+                return archiveName.substring(0, archiveName.length() - suffix.length());
+            }
+        }
+        return archiveName;
+    }
+}
@@ -0,0 +1,190 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.DurabilityPolicy;
+import bartek.fileorganizer.model.Rule;
+import bartek.fileorganizer.model.RuleAction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Moves files grouped by target directory: each directory is created and synced once per batch
+ * instead of once per file. Rules that keep the original link it into the target instead.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class BatchMoveExecutor {
+
+    private static final long MODIFIED_TIME_TOLERANCE_MS = 2000;
+
+    private final Path sourceDirectory;
+    private final DurabilityPolicy durabilityPolicy;
+    private final FileLinker fileLinker;
+    private final EventLog eventLog;
+    private final Consumer<String> uiCallback;
+
+    public record PendingMove(Path source, Rule rule) {}
+
+    public int execute(List<PendingMove> moves) {
+        Map<String, List<PendingMove>> byTargetFolder = new TreeMap<>();
+        for (PendingMove move : moves) {
+            byTargetFolder.computeIfAbsent(move.rule().targetFolder(), folder -> new ArrayList<>()).add(move);
+        }
+
+        // A rename also changes the directory the file left, which needs its own sync to be durable
+        Set<Path> emptiedDirs = new HashSet<>();
+        int movedTotal = 0;
+        for (Map.Entry<String, List<PendingMove>> entry : byTargetFolder.entrySet()) {
+            movedTotal += moveIntoDirectory(entry.getKey(), entry.getValue(), emptiedDirs);
+        }
+        if (durabilityPolicy == DurabilityPolicy.PER_DIRECTORY) {
+            emptiedDirs.forEach(BatchMoveExecutor::sync);
+        }
+        return movedTotal;
+    }
+
+    private int moveIntoDirectory(String targetFolder, List<PendingMove> moves, Set<Path> emptiedDirs) {
+        Path targetDir = sourceDirectory.resolve(targetFolder);
+
+        try {
+            Files.createDirectories(targetDir);
+        } catch (IOException e) {
+            log.error("Error creating target directory {}: {}", targetDir, e.getMessage());
+            return 0;
+        }
+
+        moves.sort(Comparator.comparing(move -> move.source().getFileName()));
+
+        int moved = 0;
+        Path lastSource = null;
+        boolean linked = false;
+        for (PendingMove move : moves) {
+            Path source = move.source();
+            RuleAction action = move.rule().action();
+            try {
+                if (action.keepsOriginal() && isAlreadyLinked(source, targetDir)) {
+                    log.debug("{} is already in {}", source.getFileName(), targetDir);
+                    continue;
+                }
+
+                Path targetFile = uniqueTarget(targetDir, source.getFileName().toString());
+                if (action.keepsOriginal()) {
+                    FileLinker.Method method = fileLinker.link(source, targetFile, action);
+                    log.debug("Linked {} to {} ({})", source, targetFile, method);
+                    eventLog.record(EventLog.Type.LINKED, source, method + " " + targetFile);
+                    linked = true;
+                } else {
+                    Files.move(source, targetFile);
+                    log.debug("Moved {} to {}", source, targetFile);
+                    eventLog.record(EventLog.Type.MOVED, source, targetFile.toString());
+                    emptiedDirs.add(source.toAbsolutePath().getParent());
+                }
+
+                if (durabilityPolicy == DurabilityPolicy.PER_FILE) {
+                    sync(targetFile);
+                    sync(targetDir);
+                    if (!action.keepsOriginal()) {
+                        sync(source.toAbsolutePath().getParent());
+                    }
+                }
+                lastSource = source;
+                moved++;
+            } catch (IOException e) {
+                log.error("Error moving file {}: {}", source.getFileName(), e.getMessage());
+                eventLog.record(EventLog.Type.FAILED, source, e.getMessage());
+            }
+        }
+
+        if (moved == 0) {
+            return 0;
+        }
+        if (durabilityPolicy == DurabilityPolicy.PER_DIRECTORY) {
+            sync(targetDir);
+        }
+
+        String verb = linked ? "Linked" : "Moved";
+        if (moved == 1) {
+            // Single files come from the watcher; the event log already has them, so keep logback off this path
+            log.debug("{} {} to {}", verb, lastSource.getFileName(), targetDir);
+            uiCallback.accept(verb + " " + lastSource.getFileName() + " to " + targetFolder);
+        } else {
+            log.info("{} {} files to {}", verb, moved, targetDir);
+            uiCallback.accept(verb + " " + moved + " files to " + targetFolder);
+        }
+        return moved;
+    }
+
+    static Path uniqueTarget(Path targetDir, String fileName) {
+        Path targetFile = targetDir.resolve(fileName);
+        for (int counter = 1; Files.exists(targetFile, LinkOption.NOFOLLOW_LINKS); counter++) {
+            targetFile = numberedTarget(targetDir, fileName, counter);
+        }
+        return targetFile;
+    }
+
+    private static Path numberedTarget(Path targetDir, String fileName, int counter) {
+        int dotIndex = fileName.lastIndexOf('.');
+        String nameWithoutExtension = dotIndex > 0 ? fileName.substring(0, dotIndex) : fileName;
+        String extension = dotIndex > 0 ? fileName.substring(dotIndex) : "";
+        return targetDir.resolve(nameWithoutExtension + " (" + counter + ")" + extension);
+    }
+
+    /**
+     * Rules that keep the original see the same file again on every scan. The target and every numbered
+     * name {@link #uniqueTarget} may have given it are checked: a symlink must point at the source, a hard
+     * link must be the same file, and a clone or copy must have the same size, modification time and content.
+     */
+    private static boolean isAlreadyLinked(Path source, Path targetDir) {
+        String fileName = source.getFileName().toString();
+        Path candidate = targetDir.resolve(fileName);
+        for (int counter = 1; Files.exists(candidate, LinkOption.NOFOLLOW_LINKS); counter++) {
+            if (isLinkOf(source, candidate)) {
+                return true;
+            }
+            candidate = numberedTarget(targetDir, fileName, counter);
+        }
+        return false;
+    }
+
+    private static boolean isLinkOf(Path source, Path candidate) {
+        try {
+            if (Files.isSymbolicLink(candidate)) {
+                Path linkTarget = candidate.resolveSibling(Files.readSymbolicLink(candidate));
+                return linkTarget.toAbsolutePath().normalize().equals(source.toAbsolutePath().normalize());
+            }
+            if (Files.isSameFile(source, candidate)) {
+                return true;
+            }
+            // Copies keep the modification time only as precisely as the target file system stores it
+            long timeDifference = Files.getLastModifiedTime(source).toMillis() - Files.getLastModifiedTime(candidate).toMillis();
+            return Files.size(source) == Files.size(candidate)
+                    && Math.abs(timeDifference) <= MODIFIED_TIME_TOLERANCE_MS
+                    && Files.mismatch(source, candidate) == -1;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void sync(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Directories cannot be opened for syncing on some platforms (e.g. Windows)
+            log.debug("Unable to sync {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -6,20 +6,24 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Slf4j
 public class DirectoryWatcher implements Runnable {
 
     private final AppConfig config;
-    private final FileProcessor fileProcessor;
+    private final ProcessingScheduler scheduler;
     private final Path directoryPath;
+    private final EventLog eventLog;
+    private final IgnoreFilter ignoreFilter;
 
 
-    public DirectoryWatcher(AppConfig config, Consumer<String> uiCallback) {
+    public DirectoryWatcher(AppConfig config, ProcessingScheduler scheduler, EventLog eventLog) {
         this.config = config;
         this.directoryPath = Paths.get(config.sourceDirectory());
-        this.fileProcessor = new FileProcessor(config, uiCallback);
+        this.eventLog = eventLog;
+        this.scheduler = scheduler;
+        this.ignoreFilter = new IgnoreFilter(config);
     }
 
 
@@ -57,6 +61,9 @@ public class DirectoryWatcher implements Runnable {
 
                     if(kind == StandardWatchEventKinds.OVERFLOW)
                     {
+                        // Events were lost, so everything still lying in the folder has to be looked at again
+                        log.warn("Watch events overflowed, rescanning {}", directoryPath);
+                        rescan();
                         continue;
                     }
 
@@ -64,16 +71,21 @@ public class DirectoryWatcher implements Runnable {
                     WatchEvent<Path> ev = (WatchEvent<Path>) event;
                     Path fileName = ev.context();
 
-                    log.info("New file detected: {}", fileName);
+                    if (ignoreFilter.ignoresName(fileName.toString())) {
+                        continue;
+                    }
+
+                    log.debug("New file detected: {}", fileName);
 
                     Path fullPath = directoryPath.resolve(fileName);
-                    fileProcessor.processFile(fullPath);
+                    eventLog.record(EventLog.Type.DETECTED, fullPath, null);
+                    scheduler.submit(fullPath);
+                }
 
-                    boolean valid = key.reset();
-                    if (!valid) {
-                        log.warn("WatchKey no longer valid, stopping watcher.");
-                        break;
-                    }
+                boolean valid = key.reset();
+                if (!valid) {
+                    log.warn("WatchKey no longer valid, stopping watcher.");
+                    break;
                 }
             }
         }
@@ -82,4 +94,17 @@ public class DirectoryWatcher implements Runnable {
             log.error("Critical error in WatchService", exception);        }
 
     }
+
+    private void rescan() {
+        try (Stream<Path> files = Files.list(directoryPath)) {
+            files.filter(file -> !ignoreFilter.ignoresName(file.getFileName().toString()))
+                    .filter(Files::isRegularFile)
+                    .forEach(file -> {
+                        eventLog.record(EventLog.Type.DETECTED, file, "rescan");
+                        scheduler.submit(file);
+                    });
+        } catch (IOException e) {
+            log.error("Error rescanning {}: {}", directoryPath, e.getMessage());
+        }
+    }
 }
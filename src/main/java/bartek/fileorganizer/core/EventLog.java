@@ -0,0 +1,303 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.OverflowPolicy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-file organizer events written as JSON lines by a background thread.
+ * Producers only claim a slot in a preallocated ring buffer and never wait for I/O;
+ * when the buffer is full the event is dropped and counted.
+ */
+@Slf4j
+public class EventLog implements AutoCloseable {
+
+    public enum Type {
+        DETECTED,
+        MATCHED,
+        NO_MATCH,
+        MOVED,
+        LINKED,
+        EXTRACTED,
+        FAILED,
+        DROPPED
+    }
+
+    static final int CAPACITY = 8192;
+    private static final int MASK = CAPACITY - 1;
+    private static final long MAX_FILE_BYTES = 16L * 1024 * 1024;
+    static final int MAX_ROLLED_FILES = 3;
+
+    private final Path file;
+    private final OverflowPolicy overflowPolicy;
+    private final long maxFileBytes;
+
+    private final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private final long[] timestamps = new long[CAPACITY];
+    private final Type[] types = new Type[CAPACITY];
+    private final Object[] subjects = new Object[CAPACITY];
+    private final String[] details = new String[CAPACITY];
+
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong droppedTotal = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile boolean writerParked;
+    private volatile Thread writerThread;
+    private BufferedWriter writer;
+    private long fileBytes;
+
+    public EventLog(Path file, OverflowPolicy overflowPolicy) {
+        this(file, overflowPolicy, MAX_FILE_BYTES);
+    }
+
+    EventLog(Path file, OverflowPolicy overflowPolicy, long maxFileBytes) {
+        this.file = file;
+        this.overflowPolicy = overflowPolicy;
+        this.maxFileBytes = maxFileBytes;
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::writeLoop);
+        writerThread.setDaemon(true);
+        writerThread.setName("EventLog-Writer");
+        writerThread.start();
+    }
+
+    public void record(Type type, Object subject, String detail) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & MASK);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+
+        timestamps[index] = System.currentTimeMillis();
+        types[index] = type;
+        subjects[index] = subject;
+        details[index] = detail;
+        sequences.set(index, position + 1);
+
+        // The writer sleeps until there is something to write; both flags are volatile, so either it
+        // sees this event before parking or this sees it parked
+        if (writerParked) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    public long droppedEvents() {
+        return droppedTotal.get() + dropped.sum();
+    }
+
+    private void writeLoop() {
+        try {
+            openWriter();
+            boolean unflushed = false;
+            while (running || tail.get() != head) {
+                unflushed |= drain() > 0;
+                unflushed |= reportDropped();
+                if (isPublished(head)) {
+                    continue;
+                }
+                if (unflushed) {
+                    writer.flush();
+                    unflushed = false;
+                }
+                writerParked = true;
+                if (running && !isPublished(head)) {
+                    LockSupport.park(this);
+                }
+                writerParked = false;
+            }
+            writer.flush();
+        } catch (IOException e) {
+            log.error("Event log writer stopped: {}", e.getMessage());
+        } finally {
+            closeWriter();
+        }
+    }
+
+    private boolean isPublished(long position) {
+        return sequences.get((int) (position & MASK)) == position + 1;
+    }
+
+    private int drain() throws IOException {
+        int written = 0;
+        while (true) {
+            int index = (int) (head & MASK);
+            if (!isPublished(head)) {
+                return written;
+            }
+
+            writeLine(timestamps[index], types[index], String.valueOf(subjects[index]), details[index]);
+            subjects[index] = null;
+            details[index] = null;
+            sequences.set(index, head + CAPACITY);
+            head++;
+            written++;
+        }
+    }
+
+    private boolean reportDropped() throws IOException {
+        long count = dropped.sumThenReset();
+        if (count == 0) {
+            return false;
+        }
+        droppedTotal.addAndGet(count);
+        if (overflowPolicy != OverflowPolicy.SUMMARIZE) {
+            return false;
+        }
+        writeLine(System.currentTimeMillis(), Type.DROPPED, null, count + " events dropped");
+        return true;
+    }
+
+    private void writeLine(long timestamp, Type type, String subject, String detail) throws IOException {
+        StringBuilder line = new StringBuilder(128)
+                .append("{\"ts\":\"").append(Instant.ofEpochMilli(timestamp))
+                .append("\",\"type\":\"").append(type).append('"');
+        if (subject != null) {
+            line.append(",\"path\":");
+            appendJsonString(line, subject);
+        }
+        if (detail != null) {
+            line.append(",\"detail\":");
+            appendJsonString(line, detail);
+        }
+        line.append("}\n");
+
+        long lineBytes = utf8Length(line);
+        if (fileBytes + lineBytes > maxFileBytes) {
+            rollOver();
+        }
+        writer.write(line.toString());
+        fileBytes += lineBytes;
+    }
+
+    private static long utf8Length(CharSequence text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private void openWriter() throws IOException {
+        Files.createDirectories(file.getParent());
+        writer = Files.newBufferedWriter(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileBytes = Files.size(file);
+    }
+
+    private void rollOver() throws IOException {
+        writer.close();
+        for (int i = MAX_ROLLED_FILES - 1; i >= 1; i--) {
+            Path older = rolledFile(i);
+            if (Files.exists(older)) {
+                Files.move(older, rolledFile(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rolledFile(1), StandardCopyOption.REPLACE_EXISTING);
+        openWriter();
+    }
+
+    private Path rolledFile(int number) {
+        String name = file.getFileName().toString();
+        int dotIndex = name.lastIndexOf('.');
+        String rolledName = dotIndex > 0
+                ? name.substring(0, dotIndex) + "." + number + name.substring(dotIndex)
+                : name + "." + number;
+        return file.resolveSibling(rolledName);
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            log.error("Error closing event log: {}", e.getMessage());
+        }
+    }
+
+    private static void appendJsonString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        builder.append('"');
+    }
+
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            running = false;
+            thread = writerThread;
+        }
+        if (thread == null) {
+            return;
+        }
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.RuleAction;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Makes a file appear in a target folder while the original stays where it is.
+ * The cheapest method the source/target file store pair supports is tried first, with a plain copy as the last resort.
+ * Methods a file store turned out not to support are skipped for it from then on.
+ */
+@Slf4j
+public class FileLinker {
+
+    public enum Method {
+        HARDLINK,
+        SYMLINK,
+        CLONE,
+        COPY
+    }
+
+    private final Map<Path, FileStore> storesByDirectory = new ConcurrentHashMap<>();
+    private final Map<FileStore, Set<Method>> unsupportedByStore = new ConcurrentHashMap<>();
+
+    public Method link(Path source, Path target, RuleAction action) throws IOException {
+        FileStore targetStore = store(target.getParent());
+        boolean sameStore = store(source.getParent()).equals(targetStore);
+
+        for (Method method : candidates(action, sameStore)) {
+            if (isUnsupported(targetStore, method)) {
+                continue;
+            }
+            try {
+                if (apply(method, source, target)) {
+                    return method;
+                }
+                markUnsupported(targetStore, method);
+            } catch (FileAlreadyExistsException | NoSuchFileException e) {
+                throw e;
+            } catch (UnsupportedOperationException e) {
+                markUnsupported(targetStore, method);
+            } catch (FileSystemException e) {
+                // Could be specific to this file (permissions, protected links), so only skip it this time
+                log.debug("{} of {} failed: {}", method, source.getFileName(), e.getMessage());
+            }
+        }
+        throw new IOException("No link method succeeded for " + source);
+    }
+
+    private static List<Method> candidates(RuleAction action, boolean sameStore) {
+        List<Method> methods = new ArrayList<>(4);
+        switch (action) {
+            case SYMLINK -> {
+                methods.add(Method.SYMLINK);
+                if (sameStore) {
+                    methods.add(Method.HARDLINK);
+                }
+            }
+            case HARDLINK -> {
+                if (sameStore) {
+                    methods.add(Method.HARDLINK);
+                    methods.add(Method.CLONE);
+                }
+            }
+            case CLONE -> {
+                if (sameStore) {
+                    methods.add(Method.CLONE);
+                }
+            }
+            default -> throw new IllegalArgumentException("Not a link action: " + action);
+        }
+        methods.add(Method.COPY);
+        return methods;
+    }
+
+    /**
+     * @return {@code false} if the file system cannot do {@code method} at all
+     */
+    boolean apply(Method method, Path source, Path target) throws IOException {
+        switch (method) {
+            case HARDLINK -> Files.createLink(target, source);
+            case SYMLINK -> Files.createSymbolicLink(target, source.toAbsolutePath());
+            case CLONE -> {
+                if (!Reflink.isAvailable() || !Reflink.cloneFile(source, target)) {
+                    return false;
+                }
+                copyAttributes(source, target);
+            }
+            case COPY -> Files.copy(source, target, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+        return true;
+    }
+
+    private static void copyAttributes(Path source, Path target) throws IOException {
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+        if (Files.getFileAttributeView(target, PosixFileAttributeView.class) != null) {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        }
+    }
+
+    FileStore store(Path directory) throws IOException {
+        FileStore store = storesByDirectory.get(directory);
+        if (store == null) {
+            store = Files.getFileStore(directory);
+            storesByDirectory.put(directory, store);
+        }
+        return store;
+    }
+
+    private boolean isUnsupported(FileStore store, Method method) {
+        Set<Method> unsupported = unsupportedByStore.get(store);
+        return unsupported != null && unsupported.contains(method);
+    }
+
+    private void markUnsupported(FileStore store, Method method) {
+        if (unsupportedByStore.computeIfAbsent(store, s -> ConcurrentHashMap.newKeySet()).add(method)) {
+            log.info("{} not supported on {}, falling back", method, store);
+        }
+    }
+}
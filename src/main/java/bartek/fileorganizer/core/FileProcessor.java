@@ -2,96 +2,144 @@ package bartek.fileorganizer.core;
 
 import bartek.fileorganizer.model.AppConfig;
 import bartek.fileorganizer.model.Rule;
-import lombok.RequiredArgsConstructor;
+import bartek.fileorganizer.model.RuleAction;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 @Slf4j
-@RequiredArgsConstructor
 public class FileProcessor {
 
     private final AppConfig config;
+    private final RuleMatcher ruleMatcher;
+    private final EventLog eventLog;
     private final Consumer<String> uiCallback;
+    private final Executor workers;
+    private final BatchMoveExecutor batchMoveExecutor;
+    private final ArchiveExtractor archiveExtractor;
+    private final WorkCoordinator coordinator;
+    private final IgnoreFilter ignoreFilter;
+
+    public FileProcessor(AppConfig config, RuleMatcher ruleMatcher, EventLog eventLog, Executor workers, Consumer<String> uiCallback) {
+        this.config = config;
+        this.ruleMatcher = ruleMatcher;
+        this.eventLog = eventLog;
+        this.workers = workers;
+        this.uiCallback = uiCallback;
+        Path sourceDir = Paths.get(config.sourceDirectory());
+        this.batchMoveExecutor = new BatchMoveExecutor(sourceDir, config.durabilityPolicy(), new FileLinker(), eventLog, uiCallback);
+        this.archiveExtractor = new ArchiveExtractor(sourceDir, ruleMatcher, eventLog, uiCallback);
+        this.coordinator = new WorkCoordinator(config.coordination());
+        this.ignoreFilter = new IgnoreFilter(config);
+    }
 
     public void processFile(Path filePath) {
+        findRule(filePath).ifPresent(rule -> processFile(filePath, rule));
+    }
+
+    public Optional<Rule> findRule(Path filePath) {
         String fileName = filePath.getFileName().toString();
 
-        Optional<Rule> matchingRule = config.rules().stream()
-                .filter(rule -> rule.matches(fileName))
-                .findFirst();
+        if (ignoreFilter.ignoresName(fileName)) {
+            log.debug("Ignoring {}", fileName);
+            return Optional.empty();
+        }
+        if (!coordinator.owns(filePath)) {
+            log.debug("{} belongs to another instance", fileName);
+            return Optional.empty();
+        }
+
+        Optional<Rule> matchingRule = ruleMatcher.match(fileName);
 
         if (matchingRule.isEmpty()) {
-            log.info("No matching rule found for {}", fileName);
-            return;
+            log.debug("No matching rule found for {}", fileName);
+            eventLog.record(EventLog.Type.NO_MATCH, filePath, null);
+            return matchingRule;
         }
 
         Rule rule = matchingRule.get();
-        log.info("Found matching rule for {}: move to {}", fileName, rule.targetFolder());
+        log.debug("Found matching rule for {}: move to {}", fileName, rule.targetFolder());
+        eventLog.record(EventLog.Type.MATCHED, filePath, rule.targetFolder());
+        return matchingRule;
+    }
+
+    public void processFile(Path filePath, Rule rule) {
+        String fileName = filePath.getFileName().toString();
 
+        if (ignoreFilter.ignoresFile(filePath)) {
+            log.debug("Ignoring {} by size or age", fileName);
+            return;
+        }
+        if (!coordinator.tryClaim(filePath)) {
+            log.debug("{} is claimed by another instance", fileName);
+            return;
+        }
+
+        boolean releaseLater = false;
         try {
-            if (waitForFileLock(filePath)) {
-                moveFile(filePath, rule.targetFolder());
-            } else {
+            if (Files.notExists(filePath)) {
+                // Reported twice, e.g. by the rescan after a watcher overflow, and already handled
+                log.debug("{} no longer exists", fileName);
+            } else if (!waitForFileLock(filePath)) {
                 log.error("Could not acquire lock for file: {}", fileName);
+                eventLog.record(EventLog.Type.FAILED, filePath, "lock not acquired");
+            } else if (isExtraction(filePath, rule)) {
+                workers.execute(() -> {
+                    try {
+                        extractArchive(filePath, rule);
+                    } finally {
+                        coordinator.release(filePath);
+                    }
+                });
+                releaseLater = true;
+            } else {
+                batchMoveExecutor.execute(List.of(new BatchMoveExecutor.PendingMove(filePath, rule)));
             }
-        } catch (IOException e) {
-            log.error("Error processing file {}: {}", fileName, e.getMessage());
         } catch (InterruptedException e) {
-            log.error("Unable to get access to lock file {}: {}", fileName, e.getMessage());
+            // The watcher or scheduler thread is being stopped, let its loop see that
+            Thread.currentThread().interrupt();
+            log.debug("Interrupted while waiting for {}", fileName);
+        } finally {
+            if (!releaseLater) {
+                coordinator.release(filePath);
+            }
         }
     }
 
-    private void moveFile(Path source, String targetFolder) throws IOException {
-        Path sourceDir = Paths.get(config.sourceDirectory());
-        Path targetDir = sourceDir.resolve(targetFolder);
-
-        if (!Files.exists(targetDir)) {
-            Files.createDirectories(targetDir);
-        }
-
-        Path targetFile = targetDir.resolve(source.getFileName());
-
-        int counter = 1;
-
-        if(Files.exists(targetFile)) {
-            while (Files.exists(targetFile)) {
-                String fileName = source.getFileName().toString();
+    private static boolean isExtraction(Path filePath, Rule rule) {
+        return rule.action() == RuleAction.EXTRACT && ArchiveExtractor.isSupported(filePath.getFileName().toString());
+    }
 
-                String extension = "";
-                String nameWithoutExtension = fileName.substring(fileName.lastIndexOf('.'));
-                if (fileName.contains(".")) {
-                    extension = fileName.substring(fileName.lastIndexOf('.'));
-                    nameWithoutExtension = fileName.substring(0, fileName.lastIndexOf('.'));
-                }
-                targetFile = targetDir.resolve(nameWithoutExtension + " (" + counter + ")" + extension);
-                counter++;
-            }
+    private void extractArchive(Path archive, Rule rule) {
+        try {
+            archiveExtractor.extract(archive, rule);
+        } catch (IOException e) {
+            log.error("Error extracting archive {}: {}", archive.getFileName(), e.getMessage());
+            eventLog.record(EventLog.Type.FAILED, archive, e.getMessage());
+            uiCallback.accept("Error extracting " + archive.getFileName() + ": " + e.getMessage());
+            return;
         }
-        Files.move(source, targetFile);
-
-        log.info("Moved {} to {}", source, targetFile);
-
-        uiCallback.accept("Moved " + source.getFileName() + " to " + targetFolder);
+        // The extracted archive itself is filed under the rule's target folder
+        batchMoveExecutor.execute(List.of(new BatchMoveExecutor.PendingMove(archive, rule)));
     }
 
     private boolean waitForFileLock(Path path) throws InterruptedException {
         int maxAttempts = 10;
         int sleepTime = 1000;
         for (int i = 0; i < maxAttempts; i++) {
-            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
-                 FileLock lock = channel.tryLock()) {
-
-                if (lock != null) {
-                    return true;
-                }
-            } catch (IOException ignored) {}
+            if (isUnlocked(path)) {
+                return true;
+            }
 
             log.debug("File is locked waiting... ({}/{})", i + 1, maxAttempts);
             Thread.sleep(sleepTime);
@@ -99,6 +147,16 @@ public class FileProcessor {
         return false;
     }
 
+    private static boolean isUnlocked(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            return lock != null;
+        } catch (IOException | OverlappingFileLockException ignored) {
+            // The latter means a writer in this JVM holds the lock
+            return false;
+        }
+    }
+
     public void scanExistingFiles() {
         Path sourceDir = Paths.get(config.sourceDirectory());
 
@@ -109,12 +167,34 @@ public class FileProcessor {
 
         log.info("Scanning existing files");
         uiCallback.accept("Scanning existing files");
+
+        List<BatchMoveExecutor.PendingMove> pending = new ArrayList<>();
+        List<BatchMoveExecutor.PendingMove> locked = new ArrayList<>();
         try (Stream<Path> stream = Files.list(sourceDir)) {
-            stream.filter(Files::isRegularFile)
-                    .forEach(this::processFile);
+            stream.filter(file -> !ignoreFilter.ignoresName(file.getFileName().toString()))
+                    .filter(Files::isRegularFile)
+                    .filter(file -> !ignoreFilter.ignoresFile(file))
+                    .filter(file -> coordinator.owns(file) || coordinator.isAbandoned(file))
+                    .forEach(file -> ruleMatcher.match(file.getFileName().toString()).ifPresent(rule -> {
+                        if (isExtraction(file, rule) || !isUnlocked(file)) {
+                            locked.add(new BatchMoveExecutor.PendingMove(file, rule));
+                        } else if (coordinator.tryClaim(file)) {
+                            pending.add(new BatchMoveExecutor.PendingMove(file, rule));
+                        } else {
+                            locked.add(new BatchMoveExecutor.PendingMove(file, rule));
+                        }
+                    }));
         } catch (IOException e) {
             log.error("Error scanning existing files: {}", e.getMessage());
             uiCallback.accept("Error scanning existing files: " + e.getMessage());
+            return;
         }
+
+        int moved = batchMoveExecutor.execute(pending);
+        log.info("Batch moved {} of {} matched files", moved, pending.size());
+        pending.forEach(move -> coordinator.release(move.source()));
+
+        // Archives and files still being written are handled one by one
+        locked.forEach(move -> processFile(move.source(), move.rule()));
     }
 }
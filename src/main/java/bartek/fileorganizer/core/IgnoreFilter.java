@@ -0,0 +1,245 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.AppConfig;
+import bartek.fileorganizer.model.IgnorePolicy;
+import bartek.fileorganizer.model.Rule;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * {@link IgnorePolicy} compiled for the hot path: {@link #ignoresName} works on the bare file name
+ * without allocating, so ignored files cost no path resolution, stat or rule scan.
+ * Size and age limits need file attributes and are checked separately by {@link #ignoresFile}.
+ */
+@Slf4j
+public class IgnoreFilter {
+
+    private static final List<String> DEFAULT_NAMES = List.of("desktop.ini", "thumbs.db", ".ds_store");
+    private static final List<String> DEFAULT_PREFIXES = List.of("~$");
+    private static final List<String> DEFAULT_SUFFIXES = List.of(".crdownload", ".part", ".partial", ".download", ".tmp");
+
+    private final boolean ignoreHidden;
+    private final String[] names;
+    private final String[] prefixes;
+    private final String[] suffixes;
+    private final Pattern globs;
+    private final long minSizeBytes;
+    private final long maxSizeBytes;
+    private final long maxAgeSeconds;
+
+    public IgnoreFilter(AppConfig config) {
+        IgnorePolicy policy = config.ignore() != null
+                ? config.ignore()
+                : new IgnorePolicy(null, null, null, 0, 0, 0, false);
+
+        Set<String> nameSet = new LinkedHashSet<>();
+        Set<String> prefixSet = new LinkedHashSet<>(policy.prefixes());
+        Set<String> suffixSet = new LinkedHashSet<>(policy.suffixes());
+        if (!policy.disableDefaults()) {
+            nameSet.addAll(DEFAULT_NAMES);
+            nameSet.addAll(targetFolderNames(config));
+            prefixSet.addAll(DEFAULT_PREFIXES);
+            suffixSet.addAll(DEFAULT_SUFFIXES);
+        }
+
+        this.ignoreHidden = !policy.disableDefaults();
+        this.names = nameSet.toArray(String[]::new);
+        this.prefixes = prefixSet.toArray(String[]::new);
+        this.suffixes = suffixSet.toArray(String[]::new);
+        this.globs = compileGlobs(policy.globs());
+        this.minSizeBytes = policy.minSizeBytes();
+        this.maxSizeBytes = policy.maxSizeBytes();
+        this.maxAgeSeconds = policy.maxAgeSeconds();
+    }
+
+    public boolean ignoresName(String fileName) {
+        if (ignoreHidden && fileName.startsWith(".")) {
+            return true;
+        }
+        for (String name : names) {
+            if (name.equalsIgnoreCase(fileName)) {
+                return true;
+            }
+        }
+        for (String prefix : prefixes) {
+            if (fileName.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                return true;
+            }
+        }
+        for (String suffix : suffixes) {
+            if (fileName.regionMatches(true, fileName.length() - suffix.length(), suffix, 0, suffix.length())) {
+                return true;
+            }
+        }
+        return globs != null && globs.matcher(fileName).matches();
+    }
+
+    private boolean hasAttributeLimits() {
+        return minSizeBytes > 0 || maxSizeBytes > 0 || maxAgeSeconds > 0;
+    }
+
+    /**
+     * Applies the size and age limits. Only stats the file when any limit is set.
+     */
+    public boolean ignoresFile(Path file) {
+        if (!hasAttributeLimits()) {
+            return false;
+        }
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (minSizeBytes > 0 && attributes.size() < minSizeBytes) {
+                return true;
+            }
+            if (maxSizeBytes > 0 && attributes.size() > maxSizeBytes) {
+                return true;
+            }
+            return maxAgeSeconds > 0
+                    && attributes.lastModifiedTime().toInstant().plusSeconds(maxAgeSeconds).isBefore(Instant.now());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static List<String> targetFolderNames(AppConfig config) {
+        List<String> folderNames = new ArrayList<>();
+        if (config.sourceDirectory() == null) {
+            return folderNames;
+        }
+        Path sourceDir = Paths.get(config.sourceDirectory()).normalize();
+        for (Rule rule : config.rules()) {
+            if (rule.targetFolder() == null || rule.targetFolder().isBlank()) {
+                continue;
+            }
+            // Only the top folder of a target inside the source folder shows up in its watch events
+            Path target = sourceDir.resolve(rule.targetFolder()).normalize();
+            if (target.startsWith(sourceDir) && !target.equals(sourceDir)) {
+                folderNames.add(sourceDir.relativize(target).getName(0).toString());
+            }
+        }
+        return folderNames;
+    }
+
+    /**
+     * Returns the globs that cannot be compiled, so a configuration can be rejected before it is saved.
+     */
+    public static List<String> invalidGlobs(List<String> globs) {
+        List<String> invalid = new ArrayList<>();
+        for (String glob : globs) {
+            if (compileGlob(glob) == null) {
+                invalid.add(glob);
+            }
+        }
+        return invalid;
+    }
+
+    private static Pattern compileGlobs(List<String> globs) {
+        // Each glob is checked on its own, so one bad pattern cannot break the combined one
+        StringJoiner alternatives = new StringJoiner("|");
+        for (String glob : globs) {
+            Pattern pattern = compileGlob(glob);
+            if (pattern == null) {
+                log.error("Invalid ignore glob '{}', skipping it", glob);
+            } else {
+                alternatives.add("(?:" + pattern.pattern() + ")");
+            }
+        }
+        if (alternatives.length() == 0) {
+            return null;
+        }
+        return Pattern.compile(alternatives.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    private static Pattern compileGlob(String glob) {
+        if (glob == null || glob.isEmpty()) {
+            return null;
+        }
+        try {
+            return Pattern.compile(globToRegex(glob), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() * 2);
+        boolean inGroup = false;
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                case '{' -> {
+                    if (inGroup) {
+                        throw new PatternSyntaxException("Nested group", glob, i);
+                    }
+                    regex.append("(?:");
+                    inGroup = true;
+                }
+                case '}' -> {
+                    if (inGroup) {
+                        regex.append(')');
+                        inGroup = false;
+                    } else {
+                        regex.append("\\}");
+                    }
+                }
+                case ',' -> regex.append(inGroup ? "|" : ",");
+                case '[' -> {
+                    int end = glob.indexOf(']', i + 1);
+                    if (end < 0) {
+                        regex.append("\\[");
+                    } else {
+                        appendCharacterClass(regex, glob.substring(i + 1, end));
+                        i = end;
+                    }
+                }
+                default -> appendLiteral(regex, c);
+            }
+        }
+        if (inGroup) {
+            throw new PatternSyntaxException("Unclosed group", glob, glob.length());
+        }
+        return regex.toString();
+    }
+
+    private static void appendCharacterClass(StringBuilder regex, String set) {
+        if (set.isEmpty() || set.equals("!")) {
+            throw new PatternSyntaxException("Empty character class", set, 0);
+        }
+        regex.append('[');
+        int start = 0;
+        if (set.charAt(0) == '!') {
+            regex.append('^');
+            start = 1;
+        }
+        for (int i = start; i < set.length(); i++) {
+            char c = set.charAt(i);
+            // '-' keeps its range meaning, everything else regex treats specially inside a class is escaped
+            if ("\\[]^&".indexOf(c) >= 0) {
+                regex.append('\\');
+            }
+            regex.append(c);
+        }
+        regex.append(']');
+    }
+
+    private static void appendLiteral(StringBuilder regex, char c) {
+        if ("\\.^$|()+[]{}".indexOf(c) >= 0) {
+            regex.append('\\');
+        }
+        regex.append(c);
+    }
+}
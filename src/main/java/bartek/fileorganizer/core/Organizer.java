@@ -0,0 +1,168 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.config.ConfigService;
+import bartek.fileorganizer.model.AppConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Owns the processing pipeline (watcher thread, rule matcher, event log and worker pool)
+ * independently of any UI, so it can be driven from the JavaFX app or the control API.
+ */
+@Slf4j
+public class Organizer implements AutoCloseable {
+
+    private final ConfigService configService;
+    private final EventLog eventLog;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<Consumer<String>> progressListeners = new CopyOnWriteArrayList<>();
+
+    private volatile AppConfig config;
+    private volatile RuleMatcher ruleMatcher;
+    private Thread watcherThread;
+    private ProcessingScheduler scheduler;
+
+    public Organizer(ConfigService configService, AppConfig config) {
+        this.configService = configService;
+        this.config = config;
+        this.ruleMatcher = new RuleMatcher(config.rules(), config.adaptiveRuleOrdering());
+        this.eventLog = new EventLog(ConfigService.dataDirectory().resolve("events.jsonl"), config.eventLogOverflow());
+    }
+
+    public void start() {
+        eventLog.start();
+        startDirectoryWatcher();
+    }
+
+    public AppConfig config() {
+        return config;
+    }
+
+    public RuleMatcher ruleMatcher() {
+        return ruleMatcher;
+    }
+
+    public EventLog eventLog() {
+        return eventLog;
+    }
+
+    /**
+     * Validates, saves and applies a new configuration.
+     *
+     * @throws IllegalArgumentException if the configuration is invalid; nothing is saved then
+     */
+    public synchronized void applyConfig(AppConfig newConfig) throws IOException {
+        ConfigService.validate(newConfig);
+        if (newConfig.ignore() != null) {
+            List<String> invalidGlobs = IgnoreFilter.invalidGlobs(newConfig.ignore().globs());
+            if (!invalidGlobs.isEmpty()) {
+                throw new IllegalArgumentException("Invalid ignore globs: " + invalidGlobs);
+            }
+        }
+        configService.saveConfig(newConfig);
+        this.config = newConfig;
+        this.ruleMatcher = new RuleMatcher(newConfig.rules(), newConfig.adaptiveRuleOrdering());
+        startDirectoryWatcher();
+        publish("Configuration applied for " + newConfig.sourceDirectory());
+    }
+
+    /**
+     * {@link #applyConfig} off the calling thread, as it waits for a move in progress to finish.
+     */
+    public CompletableFuture<Void> applyConfigAsync(AppConfig newConfig) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                applyConfig(newConfig);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, workers);
+    }
+
+    public CompletableFuture<Void> scanNow() {
+        FileProcessor processor = newFileProcessor();
+        return CompletableFuture.runAsync(processor::scanExistingFiles, workers);
+    }
+
+    /**
+     * Processes files given from outside the watcher. Relative paths are resolved against the source folder,
+     * and only files directly inside it are accepted - the same files the watcher would see.
+     *
+     * @throws IllegalArgumentException if any path lies outside the source folder; nothing is processed then
+     */
+    public CompletableFuture<Void> processPaths(List<Path> paths) {
+        Path sourceDir = Path.of(config.sourceDirectory()).toAbsolutePath().normalize();
+        List<Path> resolved = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            Path file = sourceDir.resolve(path).normalize();
+            if (!sourceDir.equals(file.getParent())) {
+                throw new IllegalArgumentException("Not a file in the source folder: " + path);
+            }
+            resolved.add(file);
+        }
+
+        FileProcessor processor = newFileProcessor();
+        return CompletableFuture.runAsync(() -> resolved.forEach(processor::processFile), workers);
+    }
+
+    public void addProgressListener(Consumer<String> listener) {
+        progressListeners.add(listener);
+    }
+
+    public void removeProgressListener(Consumer<String> listener) {
+        progressListeners.remove(listener);
+    }
+
+    private FileProcessor newFileProcessor() {
+        return new FileProcessor(config, ruleMatcher, eventLog, workers, this::publish);
+    }
+
+    private void publish(String message) {
+        for (Consumer<String> listener : progressListeners) {
+            listener.accept(message);
+        }
+    }
+
+    private synchronized void startDirectoryWatcher() {
+        stopDirectoryWatcher();
+
+        scheduler = new ProcessingScheduler(newFileProcessor(), config.schedule(), Path.of(config.sourceDirectory()),
+                ConfigService.dataDirectory().resolve("deferred_queue.txt"));
+        scheduler.start();
+
+        DirectoryWatcher directoryWatcher = new DirectoryWatcher(config, scheduler, eventLog);
+        watcherThread = new Thread(directoryWatcher);
+        watcherThread.setDaemon(true);
+        watcherThread.setName("Watcher-Thread");
+        watcherThread.start();
+        log.info("Started new directory watcher thread");
+    }
+
+    private synchronized void stopDirectoryWatcher() {
+        if (watcherThread != null && watcherThread.isAlive()) {
+            // Wait for it, so it cannot submit to the scheduler closed below
+            ProcessingScheduler.awaitStop(watcherThread);
+            log.info("Stopped existing directory watcher thread");
+        }
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        stopDirectoryWatcher();
+        workers.shutdownNow();
+        eventLog.close();
+    }
+}
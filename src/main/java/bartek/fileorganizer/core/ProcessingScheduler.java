@@ -0,0 +1,297 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.Rule;
+import bartek.fileorganizer.model.SchedulePolicy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sits between the watcher and {@link FileProcessor}. Small moves within one device go through immediately,
+ * heavy ones are queued, persisted, and processed by a background thread within the configured
+ * time windows and rate limits.
+ */
+@Slf4j
+public class ProcessingScheduler implements AutoCloseable {
+
+    private static final long MAX_WAIT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int PERSIST_INTERVAL = 100;
+    private static final long CLOSE_LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
+    private record Window(LocalTime start, LocalTime end) {
+        boolean contains(LocalTime time) {
+            return start.isBefore(end)
+                    ? !time.isBefore(start) && time.isBefore(end)
+                    : !time.isBefore(start) || time.isBefore(end);
+        }
+    }
+
+    private record Deferred(Path path, Rule rule) {}
+
+    private final FileProcessor fileProcessor;
+    private final SchedulePolicy policy;
+    private final Path sourceDirectory;
+    private final Path queueFile;
+    private final List<Window> windows = new ArrayList<>();
+    private final Map<String, Boolean> sameStoreByTarget = new ConcurrentHashMap<>();
+    private final LinkedBlockingDeque<Deferred> queue = new LinkedBlockingDeque<>();
+    private final TokenBucket fileBucket;
+    private final TokenBucket byteBucket;
+
+    private FileStore sourceStore;
+    private Thread workerThread;
+
+    public ProcessingScheduler(FileProcessor fileProcessor, SchedulePolicy policy, Path sourceDirectory, Path queueFile) {
+        this.fileProcessor = fileProcessor;
+        this.policy = policy;
+        this.sourceDirectory = sourceDirectory;
+        this.queueFile = queueFile;
+        this.fileBucket = new TokenBucket(policy == null ? 0 : policy.maxFilesPerSecond());
+        this.byteBucket = new TokenBucket(policy == null ? 0 : policy.maxBytesPerSecond());
+
+        if (policy != null) {
+            policy.heavyMoveWindows().forEach(this::addWindow);
+        }
+    }
+
+    public void start() {
+        if (policy == null) {
+            return;
+        }
+        try {
+            sourceStore = Files.getFileStore(sourceDirectory);
+        } catch (IOException e) {
+            log.error("Unable to read file store of {}: {}", sourceDirectory, e.getMessage());
+        }
+        loadQueue();
+
+        workerThread = new Thread(this::workLoop);
+        workerThread.setDaemon(true);
+        workerThread.setName("Scheduler-Thread");
+        workerThread.start();
+    }
+
+    public void submit(Path filePath) {
+        if (policy == null) {
+            fileProcessor.processFile(filePath);
+            return;
+        }
+
+        Optional<Rule> matchingRule = fileProcessor.findRule(filePath);
+        if (matchingRule.isEmpty()) {
+            return;
+        }
+
+        Rule rule = matchingRule.get();
+        if (isLight(filePath, rule)) {
+            fileProcessor.processFile(filePath, rule);
+            return;
+        }
+
+        log.debug("Deferring heavy move of {}", filePath);
+        queue.addLast(new Deferred(filePath, rule));
+        appendToQueueFile(filePath);
+    }
+
+    private boolean isLight(Path filePath, Rule rule) {
+        try {
+            if (policy.heavyFileBytes() > 0 && Files.size(filePath) >= policy.heavyFileBytes()) {
+                return false;
+            }
+        } catch (IOException e) {
+            return true;
+        }
+        return sameStoreByTarget.computeIfAbsent(rule.targetFolder(), this::isOnSourceStore);
+    }
+
+    private boolean isOnSourceStore(String targetFolder) {
+        if (sourceStore == null) {
+            return true;
+        }
+        Path existing = sourceDirectory.resolve(targetFolder);
+        while (existing != null && !Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        try {
+            return existing == null || sourceStore.equals(Files.getFileStore(existing));
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private void workLoop() {
+        int processedSincePersist = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            Deferred next;
+            try {
+                next = queue.takeFirst();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            long waitMillis = millisUntilWindow();
+            if (waitMillis > 0) {
+                queue.addFirst(next);
+                try {
+                    Thread.sleep(Math.min(waitMillis, MAX_WAIT_MILLIS));
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                processDeferred(next);
+            } catch (InterruptedException e) {
+                queue.addFirst(next);
+                return;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                // FileProcessor gave up on the file because of the interrupt; if it got moved after all,
+                // the next run finds it gone and skips it
+                queue.addFirst(next);
+                return;
+            }
+
+            if (++processedSincePersist >= PERSIST_INTERVAL || queue.isEmpty()) {
+                persistQueue();
+                processedSincePersist = 0;
+            }
+        }
+    }
+
+    private void processDeferred(Deferred deferred) throws InterruptedException {
+        long size;
+        try {
+            size = Files.size(deferred.path());
+        } catch (IOException e) {
+            log.debug("Deferred file {} is gone: {}", deferred.path(), e.getMessage());
+            return;
+        }
+
+        fileBucket.acquire(1);
+        byteBucket.acquire(size);
+
+        if (deferred.rule() != null) {
+            fileProcessor.processFile(deferred.path(), deferred.rule());
+        } else {
+            fileProcessor.processFile(deferred.path());
+        }
+    }
+
+    private long millisUntilWindow() {
+        if (windows.isEmpty()) {
+            return 0;
+        }
+        LocalTime now = LocalTime.now();
+        long shortest = Long.MAX_VALUE;
+        for (Window window : windows) {
+            if (window.contains(now)) {
+                return 0;
+            }
+            Duration untilStart = Duration.between(now, window.start());
+            if (untilStart.isNegative()) {
+                untilStart = untilStart.plusDays(1);
+            }
+            shortest = Math.min(shortest, untilStart.toMillis());
+        }
+        return shortest;
+    }
+
+    private void addWindow(String definition) {
+        try {
+            String[] bounds = definition.split("-");
+            windows.add(new Window(LocalTime.parse(bounds[0].trim()), LocalTime.parse(bounds[1].trim())));
+        } catch (DateTimeParseException | ArrayIndexOutOfBoundsException e) {
+            log.error("Invalid schedule window '{}', expected HH:mm-HH:mm", definition);
+        }
+    }
+
+    private void loadQueue() {
+        if (!Files.exists(queueFile)) {
+            return;
+        }
+        try {
+            for (String line : Files.readAllLines(queueFile)) {
+                if (!line.isBlank()) {
+                    queue.addLast(new Deferred(Path.of(line), null));
+                }
+            }
+            log.info("Loaded {} deferred files", queue.size());
+        } catch (IOException e) {
+            log.error("Error reading deferred queue: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void appendToQueueFile(Path filePath) {
+        try {
+            Files.createDirectories(queueFile.getParent());
+            Files.writeString(queueFile, filePath + System.lineSeparator(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log.error("Error persisting deferred file {}: {}", filePath, e.getMessage());
+        }
+    }
+
+    private synchronized void persistQueue() {
+        Path tempFile = queueFile.resolveSibling(queueFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(queueFile.getParent());
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
+                for (Deferred deferred : queue) {
+                    writer.write(deferred.path().toString());
+                    writer.newLine();
+                }
+            }
+            Files.move(tempFile, queueFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Error persisting deferred queue: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the worker and persists the queue. Returns only once the worker has stopped, so a replacement
+     * scheduler never works on the same queue while a large move is still finishing here.
+     */
+    @Override
+    public void close() {
+        if (workerThread == null) {
+            return;
+        }
+        awaitStop(workerThread);
+        persistQueue();
+    }
+
+    static void awaitStop(Thread thread) {
+        thread.interrupt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join(CLOSE_LOG_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+            if (thread.isAlive()) {
+                log.info("Waiting for {} to finish its current file", thread.getName());
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
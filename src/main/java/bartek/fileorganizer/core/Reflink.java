@@ -0,0 +1,104 @@
+package bartek.fileorganizer.core;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Copy-on-write clones through the Linux FICLONE ioctl (Btrfs, XFS, bcachefs...).
+ * The clone shares the source's blocks until either file is written.
+ */
+@Slf4j
+final class Reflink {
+
+    private static final NativeLong FICLONE = new NativeLong(0x40049409L);
+
+    private static final int O_RDONLY = 0;
+    private static final int O_WRONLY = 01;
+    private static final int O_CREAT = 0100;
+    private static final int O_EXCL = 0200;
+
+    private static final int EEXIST = 17;
+    private static final int EXDEV = 18;
+    private static final int EINVAL = 22;
+    private static final int ENOTTY = 25;
+    private static final int EOPNOTSUPP = 95;
+
+    public interface CLibrary extends Library {
+        int open(String path, int flags, int mode);
+
+        int ioctl(int fd, NativeLong request, int sourceFd);
+
+        int close(int fd);
+    }
+
+    private static final CLibrary LIBC = load();
+
+    private Reflink() {
+    }
+
+    static boolean isAvailable() {
+        return LIBC != null;
+    }
+
+    /**
+     * Clones {@code source} into the new file {@code target}.
+     *
+     * @return {@code false} if the file system cannot clone, other failures are thrown
+     */
+    static boolean cloneFile(Path source, Path target) throws IOException {
+        int sourceFd = LIBC.open(source.toString(), O_RDONLY, 0);
+        if (sourceFd < 0) {
+            throw new FileSystemException(source.toString(), null, "open failed, errno " + Native.getLastError());
+        }
+
+        int targetFd = -1;
+        try {
+            targetFd = LIBC.open(target.toString(), O_WRONLY | O_CREAT | O_EXCL, 0644);
+            if (targetFd < 0) {
+                int errno = Native.getLastError();
+                if (errno == EEXIST) {
+                    throw new FileAlreadyExistsException(target.toString());
+                }
+                throw new FileSystemException(target.toString(), null, "open failed, errno " + errno);
+            }
+
+            if (LIBC.ioctl(targetFd, FICLONE, sourceFd) == 0) {
+                return true;
+            }
+            int errno = Native.getLastError();
+            LIBC.close(targetFd);
+            targetFd = -1;
+            Files.deleteIfExists(target);
+            if (errno == EXDEV || errno == EINVAL || errno == ENOTTY || errno == EOPNOTSUPP) {
+                return false;
+            }
+            throw new FileSystemException(source.toString(), target.toString(), "FICLONE failed, errno " + errno);
+        } finally {
+            if (targetFd >= 0) {
+                LIBC.close(targetFd);
+            }
+            LIBC.close(sourceFd);
+        }
+    }
+
+    private static CLibrary load() {
+        if (!Platform.isLinux()) {
+            return null;
+        }
+        try {
+            return Native.load("c", CLibrary.class);
+        } catch (UnsatisfiedLinkError e) {
+            log.warn("Reflink clones unavailable: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.Rule;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evaluates rules with first-match-wins semantics and keeps per-rule hit/miss counters.
+ * In adaptive mode rules that can never match the same file name are reordered by hit count,
+ * so the order of overlapping rules (and therefore the result) never changes.
+ */
+@Slf4j
+public class RuleMatcher {
+
+    private static final int REORDER_INTERVAL = 1024;
+
+    private final List<Rule> rules;
+    private final LongAdder[] hits;
+    private final LongAdder[] misses;
+    private final Map<Rule, Integer> indexByRule = new IdentityHashMap<>();
+    private final boolean adaptive;
+
+    // predecessors[i] - earlier rules that may match the same file name as rule i
+    private final int[][] predecessors;
+    private final LongAdder evaluations = new LongAdder();
+    private final AtomicBoolean reordering = new AtomicBoolean();
+    private volatile int[] order;
+
+    public RuleMatcher(List<Rule> rules, boolean adaptive) {
+        this.rules = List.copyOf(rules);
+        this.adaptive = adaptive;
+        this.hits = new LongAdder[this.rules.size()];
+        this.misses = new LongAdder[this.rules.size()];
+        this.order = new int[this.rules.size()];
+
+        for (int i = 0; i < this.rules.size(); i++) {
+            hits[i] = new LongAdder();
+            misses[i] = new LongAdder();
+            order[i] = i;
+            indexByRule.putIfAbsent(this.rules.get(i), i);
+        }
+        this.predecessors = adaptive ? buildPredecessors(this.rules) : new int[0][];
+    }
+
+    public Optional<Rule> match(String fileName) {
+        int[] currentOrder = order;
+        Rule result = null;
+
+        for (int index : currentOrder) {
+            Rule rule = rules.get(index);
+            if (rule.matches(fileName)) {
+                hits[index].increment();
+                result = rule;
+                break;
+            }
+            misses[index].increment();
+        }
+
+        if (adaptive) {
+            evaluations.increment();
+            if (evaluations.sum() >= REORDER_INTERVAL && reordering.compareAndSet(false, true)) {
+                try {
+                    evaluations.reset();
+                    reorder();
+                } finally {
+                    reordering.set(false);
+                }
+            }
+        }
+        return Optional.ofNullable(result);
+    }
+
+    public long hits(Rule rule) {
+        Integer index = indexByRule.get(rule);
+        return index == null ? -1 : hits[index].sum();
+    }
+
+    public long misses(Rule rule) {
+        Integer index = indexByRule.get(rule);
+        return index == null ? -1 : misses[index].sum();
+    }
+
+    public List<Rule> evaluationOrder() {
+        List<Rule> result = new ArrayList<>(rules.size());
+        for (int index : order) {
+            result.add(rules.get(index));
+        }
+        return result;
+    }
+
+    public void exportStatistics(Path target) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(target)) {
+            writeStatistics(writer);
+        }
+        log.info("Exported rule statistics to {}", target);
+    }
+
+    public void writeStatistics(Writer writer) throws IOException {
+        writer.write("position,extension,nameContains,targetFolder,hits,misses\n");
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            writer.write(String.join(",",
+                    String.valueOf(i + 1),
+                    csv(rule.extension()),
+                    csv(rule.nameContains()),
+                    csv(rule.targetFolder()),
+                    String.valueOf(hits[i].sum()),
+                    String.valueOf(misses[i].sum())));
+            writer.write('\n');
+        }
+    }
+
+    private void reorder() {
+        int size = rules.size();
+        long[] snapshot = new long[size];
+        int[] pending = new int[size];
+        List<List<Integer>> successors = new ArrayList<>(size);
+
+        for (int i = 0; i < size; i++) {
+            snapshot[i] = hits[i].sum();
+            pending[i] = predecessors[i].length;
+            successors.add(new ArrayList<>());
+        }
+        for (int i = 0; i < size; i++) {
+            for (int predecessor : predecessors[i]) {
+                successors.get(predecessor).add(i);
+            }
+        }
+
+        // Topological order of the overlap graph, always taking the most frequently hit free rule
+        PriorityQueue<Integer> ready = new PriorityQueue<>((a, b) -> {
+            int byHits = Long.compare(snapshot[b], snapshot[a]);
+            return byHits != 0 ? byHits : Integer.compare(a, b);
+        });
+        for (int i = 0; i < size; i++) {
+            if (pending[i] == 0) {
+                ready.add(i);
+            }
+        }
+
+        int[] newOrder = new int[size];
+        int position = 0;
+        while (!ready.isEmpty()) {
+            int next = ready.poll();
+            newOrder[position++] = next;
+            for (int successor : successors.get(next)) {
+                if (--pending[successor] == 0) {
+                    ready.add(successor);
+                }
+            }
+        }
+        order = newOrder;
+        log.debug("Rules reordered by hit frequency");
+    }
+
+    private static int[][] buildPredecessors(List<Rule> rules) {
+        int[][] result = new int[rules.size()][];
+        for (int i = 0; i < rules.size(); i++) {
+            List<Integer> overlapping = new ArrayList<>();
+            for (int j = 0; j < i; j++) {
+                if (mayOverlap(rules.get(j), rules.get(i))) {
+                    overlapping.add(j);
+                }
+            }
+            result[i] = overlapping.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return result;
+    }
+
+    /**
+     * Two rules are independent only when both require an extension and neither extension is a suffix
+     * of the other - no file name can end with both. Everything else is treated as overlapping.
+     */
+    static boolean mayOverlap(Rule first, Rule second) {
+        String a = first.extension();
+        String b = second.extension();
+        if (a == null || a.isEmpty() || b == null || b.isEmpty()) {
+            return true;
+        }
+        return a.endsWith(b) || b.endsWith(a);
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,248 @@
+package bartek.fileorganizer.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Minimal streaming reader for ustar/GNU tar archives. Only regular file entries are returned;
+ * GNU long names and the {@code path} and {@code size} records of PAX headers are supported,
+ * other special entries are skipped. Long names and PAX headers are bounded, so memory stays constant.
+ */
+class TarReader {
+
+    private static final int BLOCK_SIZE = 512;
+    static final int MAX_METADATA_BYTES = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long remaining;
+    private long padding;
+
+    TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next regular file and returns its name, or {@code null} at the end of the archive.
+     * The entry content is read from {@link #entryStream()}.
+     */
+    String nextEntry() throws IOException {
+        String longName = null;
+        Long paxSize = null;
+        while (true) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+
+            if (!readBlock() || isZeroBlock()) {
+                return null;
+            }
+
+            char type = (char) header[156];
+            long size = parseSize();
+            if (paxSize != null && type != 'L' && type != 'x' && type != 'g') {
+                size = paxSize;
+            }
+            if (size < 0) {
+                throw new IOException("Invalid tar entry size " + size);
+            }
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            if (type == 'L') {
+                longName = trimNul(new String(readMetadata(size), StandardCharsets.UTF_8));
+                continue;
+            }
+            if (type == 'x') {
+                Map<String, String> records = parsePax(readMetadata(size));
+                if (records.containsKey("path")) {
+                    longName = records.get("path");
+                }
+                if (records.containsKey("size")) {
+                    paxSize = parsePaxSize(records.get("size"));
+                }
+                continue;
+            }
+            if (type != '0' && type != '\0' && type != '7') {
+                // Global PAX headers ('g') and special entries; per-entry metadata does not carry over them
+                if (type != 'g') {
+                    longName = null;
+                    paxSize = null;
+                }
+                continue;
+            }
+
+            if (longName != null) {
+                return longName;
+            }
+            String name = readString(0, 100);
+            String prefix = isUstar() ? readString(345, 155) : "";
+            return prefix.isEmpty() ? name : prefix + "/" + name;
+        }
+    }
+
+    private byte[] readMetadata(long size) throws IOException {
+        if (size > MAX_METADATA_BYTES) {
+            throw new IOException("Tar metadata entry of " + size + " bytes exceeds " + MAX_METADATA_BYTES);
+        }
+        byte[] bytes = in.readNBytes((int) size);
+        if (bytes.length < size) {
+            throw new IOException("Truncated tar archive");
+        }
+        remaining = 0;
+        return bytes;
+    }
+
+    /**
+     * Parses PAX extended header records of the form {@code "<length> <key>=<value>\n"}.
+     */
+    private static Map<String, String> parsePax(byte[] data) throws IOException {
+        Map<String, String> records = new HashMap<>();
+        int position = 0;
+        while (position < data.length && data[position] != 0) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid PAX header");
+            }
+            int end = position + length;
+            if (length <= 0 || end > data.length || space >= end || data[end - 1] != '\n') {
+                throw new IOException("Invalid PAX header");
+            }
+            String record = new String(data, space + 1, end - space - 2, StandardCharsets.UTF_8);
+            int equals = record.indexOf('=');
+            if (equals > 0) {
+                records.put(record.substring(0, equals), record.substring(equals + 1));
+            }
+            position = end;
+        }
+        return records;
+    }
+
+    private static long parsePaxSize(String value) throws IOException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid PAX size " + value);
+        }
+    }
+
+    InputStream entryStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int value = in.read();
+                if (value < 0) {
+                    throw new IOException("Truncated tar archive");
+                }
+                remaining--;
+                return value;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+                if (read < 0) {
+                    // Otherwise a cut-off archive would yield a short entry that looks complete
+                    throw new IOException("Truncated tar archive");
+                }
+                remaining -= read;
+                return read;
+            }
+        };
+    }
+
+    private boolean readBlock() throws IOException {
+        int read = in.readNBytes(header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read < BLOCK_SIZE) {
+            throw new IOException("Truncated tar header");
+        }
+        return true;
+    }
+
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isUstar() {
+        return readString(257, 5).equals("ustar");
+    }
+
+    private long parseSize() throws IOException {
+        // GNU base-256 encoding for entries of 8 GiB and more
+        if ((header[124] & 0x80) != 0) {
+            long value = header[124] & 0x7f;
+            for (int i = 125; i < 136; i++) {
+                value = (value << 8) | (header[i] & 0xff);
+            }
+            return value;
+        }
+        return parseOctal(124, 12);
+    }
+
+    private long parseOctal(int offset, int length) throws IOException {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid tar header");
+            }
+            value = value * 8 + (b - '0');
+        }
+        return value;
+    }
+
+    private String readString(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private void skipFully(long bytes) throws IOException {
+        while (bytes > 0) {
+            long skipped = in.skip(bytes);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Truncated tar archive");
+                }
+                skipped = 1;
+            }
+            bytes -= skipped;
+        }
+    }
+
+    private static String trimNul(String value) {
+        int end = value.indexOf('\0');
+        return end < 0 ? value : value.substring(0, end);
+    }
+}
@@ -0,0 +1,40 @@
+package bartek.fileorganizer.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Blocking token bucket refilled continuously at {@code ratePerSecond}, holding at most one second of tokens.
+ * A non-positive rate disables the limit.
+ */
+public class TokenBucket {
+
+    private final double ratePerSecond;
+    private double available;
+    private long lastRefillNanos;
+
+    public TokenBucket(double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+        this.available = ratePerSecond;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized void acquire(long tokens) throws InterruptedException {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        refill();
+        // Requests larger than the bucket are allowed to drive it negative and wait off the debt
+        available -= tokens;
+        if (available < 0) {
+            long waitNanos = (long) (-available / ratePerSecond * TimeUnit.SECONDS.toNanos(1));
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+            refill();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(ratePerSecond, available + (now - lastRefillNanos) * ratePerSecond / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+}
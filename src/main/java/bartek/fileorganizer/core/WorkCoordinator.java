@@ -0,0 +1,265 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.CoordinationPolicy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides which files this instance handles when several instances share one source folder.
+ * Ownership is a stable hash of the file name, so every instance agrees on it without talking to the others.
+ * Before touching a file the instance also creates a claim file in the lease directory with CREATE_NEW,
+ * which only one process can win, even if two instances are configured with overlapping shards.
+ * Held claims are renewed in the background, so long extractions and copies do not look abandoned.
+ */
+@Slf4j
+public class WorkCoordinator {
+
+    private static final ScheduledExecutorService RENEWER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Claim-Renewer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final int RELEASE_ATTEMPTS = 3;
+    private static final long RELEASE_RETRY_MILLIS = 50;
+
+    private final CoordinationPolicy policy;
+    private final Path leaseDirectory;
+    private final String instanceId;
+    private final Duration leaseTimeout;
+    private final Map<Path, HeldClaim> heldClaims = new ConcurrentHashMap<>();
+
+    private record HeldClaim(String content, ScheduledFuture<?> renewal) {}
+
+    public WorkCoordinator(CoordinationPolicy policy) {
+        this.policy = policy;
+        if (policy == null) {
+            this.leaseDirectory = null;
+            this.instanceId = null;
+            this.leaseTimeout = null;
+            return;
+        }
+
+        this.leaseDirectory = Path.of(policy.leaseDirectory());
+        this.instanceId = policy.instanceId() != null ? policy.instanceId() : defaultInstanceId();
+        this.leaseTimeout = Duration.ofSeconds(policy.leaseTimeoutSeconds());
+        try {
+            Files.createDirectories(leaseDirectory);
+        } catch (IOException e) {
+            log.error("Error creating lease directory {}: {}", leaseDirectory, e.getMessage());
+        }
+    }
+
+    public boolean owns(Path file) {
+        if (policy == null || policy.shardCount() <= 1) {
+            return true;
+        }
+        return Math.floorMod(file.getFileName().toString().hashCode(), policy.shardCount()) == policy.shardIndex();
+    }
+
+    /**
+     * Files that stayed unprocessed longer than the lease timeout are fair game for any instance.
+     */
+    public boolean isAbandoned(Path file) {
+        if (policy == null) {
+            return false;
+        }
+        try {
+            return Files.getLastModifiedTime(file).toInstant().plus(leaseTimeout).isBefore(Instant.now());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public boolean tryClaim(Path file) {
+        if (policy == null) {
+            return true;
+        }
+        Path claim = claimFile(file);
+        try {
+            String content = createClaim(claim);
+            if (content == null) {
+                content = stealIfExpired(file, claim);
+            }
+            if (content == null) {
+                return false;
+            }
+            hold(file, claim, content);
+            return true;
+        } catch (IOException e) {
+            log.error("Error claiming {}: {}", file.getFileName(), e.getMessage());
+            return false;
+        }
+    }
+
+    public void release(Path file) {
+        if (policy == null) {
+            return;
+        }
+        Path claim = claimFile(file);
+        HeldClaim held = heldClaims.remove(claim);
+        if (held == null) {
+            return;
+        }
+        held.renewal().cancel(false);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                // A claim that expired and was taken over by another instance is theirs now
+                if (isOwnClaim(claim, held)) {
+                    Files.delete(claim);
+                }
+                return;
+            } catch (NoSuchFileException e) {
+                // Possibly renamed away for a moment by another instance checking whether it expired
+                if (attempt == RELEASE_ATTEMPTS) {
+                    log.debug("Claim for {} was already gone", file.getFileName());
+                    return;
+                }
+                try {
+                    Thread.sleep(RELEASE_RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } catch (IOException e) {
+                log.warn("Error releasing claim for {}: {}", file.getFileName(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Every claim gets unique content, so a claim file can be told apart from a newer one at the same path.
+     *
+     * @return the content of the new claim, or {@code null} if the claim file already exists
+     */
+    private String createClaim(Path claim) throws IOException {
+        String content = instanceId + " " + Long.toHexString(ThreadLocalRandom.current().nextLong());
+        try {
+            Files.writeString(claim, content, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            return content;
+        } catch (FileAlreadyExistsException e) {
+            return null;
+        }
+    }
+
+    private String stealIfExpired(Path file, Path claim) {
+        try {
+            String expiredContent = Files.readString(claim, StandardCharsets.UTF_8);
+            if (!isExpired(claim)) {
+                return null;
+            }
+            // Only one instance can rename a given claim away, the others get NoSuchFileException
+            Path expired = claim.resolveSibling(claim.getFileName() + "." + System.nanoTime() + ".expired");
+            Files.move(claim, expired, StandardCopyOption.ATOMIC_MOVE);
+
+            // Another instance may have taken the claim over or its owner renewed it since it was read;
+            // then this rename caught a live claim, which goes back untouched
+            if (!isExpired(expired) || !expiredContent.equals(Files.readString(expired, StandardCharsets.UTF_8))) {
+                try {
+                    Files.move(expired, claim);
+                } catch (FileAlreadyExistsException e) {
+                    log.warn("Could not restore the claim for {}, claimed again meanwhile", file.getFileName());
+                    Files.deleteIfExists(expired);
+                }
+                return null;
+            }
+            Files.deleteIfExists(expired);
+
+            String content = createClaim(claim);
+            if (content != null) {
+                log.info("Took over expired claim for {}", file.getFileName());
+            }
+            return content;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.error("Error taking over claim for {}: {}", file.getFileName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private boolean isExpired(Path claim) throws IOException {
+        return !Files.getLastModifiedTime(claim).toInstant().plus(leaseTimeout).isAfter(Instant.now());
+    }
+
+    private void hold(Path file, Path claim, String content) {
+        long periodMillis = Math.max(1, leaseTimeout.toMillis() / 3);
+        ScheduledFuture<?> renewal = RENEWER.scheduleAtFixedRate(() -> renew(file, claim),
+                periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        HeldClaim previous = heldClaims.put(claim, new HeldClaim(content, renewal));
+        if (previous != null) {
+            previous.renewal().cancel(false);
+        }
+    }
+
+    private void renew(Path file, Path claim) {
+        HeldClaim held = heldClaims.get(claim);
+        if (held == null) {
+            return;
+        }
+        try {
+            if (isOwnClaim(claim, held)) {
+                Files.setLastModifiedTime(claim, FileTime.from(Instant.now()));
+                return;
+            }
+            log.warn("Claim for {} was taken over by another instance while it was being worked on", file.getFileName());
+        } catch (NoSuchFileException e) {
+            // Another instance checking for expiry renames claims away and back, so try again next time
+            log.debug("Claim for {} missing, renewing it next time", file.getFileName());
+            return;
+        } catch (IOException e) {
+            log.warn("Error renewing claim for {}: {}", file.getFileName(), e.getMessage());
+            return;
+        }
+        if (heldClaims.remove(claim, held)) {
+            held.renewal().cancel(false);
+        }
+    }
+
+    private static boolean isOwnClaim(Path claim, HeldClaim held) throws IOException {
+        return held.content().equals(Files.readString(claim, StandardCharsets.UTF_8));
+    }
+
+    private Path claimFile(Path file) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            return leaseDirectory.resolve(HexFormat.of().formatHex(digest, 0, 16) + ".claim");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            host = "unknown";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
@@ -1,8 +1,33 @@
 package bartek.fileorganizer.model;
 
+import java.util.Collections;
 import java.util.List;
 
 public record AppConfig(
         String sourceDirectory,
-        List<Rule> rules
-) {}
+        List<Rule> rules,
+        boolean adaptiveRuleOrdering,
+        DurabilityPolicy durabilityPolicy,
+        OverflowPolicy eventLogOverflow,
+        int controlPort,
+        SchedulePolicy schedule,
+        CoordinationPolicy coordination,
+        IgnorePolicy ignore
+) {
+
+    public AppConfig {
+        if (rules == null) {
+            rules = List.of();
+        }
+        if (durabilityPolicy == null) {
+            durabilityPolicy = DurabilityPolicy.NONE;
+        }
+        if (eventLogOverflow == null) {
+            eventLogOverflow = OverflowPolicy.SUMMARIZE;
+        }
+    }
+
+    public static AppConfig defaults(String sourceDirectory) {
+        return new AppConfig(sourceDirectory, Collections.emptyList(), false, DurabilityPolicy.NONE, OverflowPolicy.SUMMARIZE, 0, null, null, null);
+    }
+}
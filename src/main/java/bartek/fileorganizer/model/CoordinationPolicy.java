@@ -0,0 +1,25 @@
+package bartek.fileorganizer.model;
+
+/**
+ * Splits one source folder between several organizer instances. Each instance handles the files whose
+ * name hashes to its {@code shardIndex} and claims every file in {@code leaseDirectory} before touching it.
+ * Claims older than {@code leaseTimeoutSeconds} are treated as abandoned, and so are unowned files
+ * that stay in the source folder that long, so a scan on any instance picks up work of a dead one.
+ */
+public record CoordinationPolicy(
+        String leaseDirectory,
+        String instanceId,
+        int shardCount,
+        int shardIndex,
+        long leaseTimeoutSeconds
+) {
+
+    public CoordinationPolicy {
+        if (shardCount < 1) {
+            shardCount = 1;
+        }
+        if (leaseTimeoutSeconds <= 0) {
+            leaseTimeoutSeconds = 300;
+        }
+    }
+}
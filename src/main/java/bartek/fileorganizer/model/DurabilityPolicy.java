@@ -0,0 +1,7 @@
+package bartek.fileorganizer.model;
+
+public enum DurabilityPolicy {
+    NONE,
+    PER_DIRECTORY,
+    PER_FILE
+}
@@ -0,0 +1,31 @@
+package bartek.fileorganizer.model;
+
+import java.util.List;
+
+/**
+ * Files to leave alone in the source folder. Name patterns ({@code globs}, {@code prefixes}, {@code suffixes})
+ * are case-insensitive; size and age limits are off when 0. Unless {@code disableDefaults} is set, hidden files,
+ * desktop.ini/Thumbs.db/.DS_Store, partial downloads and the rules' own target folders are ignored as well.
+ */
+public record IgnorePolicy(
+        List<String> globs,
+        List<String> prefixes,
+        List<String> suffixes,
+        long minSizeBytes,
+        long maxSizeBytes,
+        long maxAgeSeconds,
+        boolean disableDefaults
+) {
+
+    public IgnorePolicy {
+        if (globs == null) {
+            globs = List.of();
+        }
+        if (prefixes == null) {
+            prefixes = List.of();
+        }
+        if (suffixes == null) {
+            suffixes = List.of();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package bartek.fileorganizer.model;
+
+public enum OverflowPolicy {
+    DROP,
+    SUMMARIZE
+}
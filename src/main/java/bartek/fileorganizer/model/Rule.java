@@ -1,13 +1,18 @@
 package bartek.fileorganizer.model;
 
-import java.time.LocalDate;
-
 public record Rule(
         String extension,
         String targetFolder,
-        String nameContains
+        String nameContains,
+        RuleAction action
 ) {
 
+    public Rule {
+        if (action == null) {
+            action = RuleAction.MOVE;
+        }
+    }
+
     public Boolean matches(String fileName) {
         boolean matchesExtension = extension == null || extension.isEmpty() || fileName.endsWith(extension);
         boolean matchesNameContains = nameContains == null || nameContains.isEmpty() || fileName.contains(nameContains);
@@ -0,0 +1,16 @@
+package bartek.fileorganizer.model;
+
+public enum RuleAction {
+    MOVE,
+    EXTRACT,
+    /** The original stays in place; the target is a hard link, or a copy if that is not possible. */
+    HARDLINK,
+    /** The original stays in place; the target is a symbolic link to it. */
+    SYMLINK,
+    /** The original stays in place; the target is a copy-on-write clone where the file system supports it. */
+    CLONE;
+
+    public boolean keepsOriginal() {
+        return this == HARDLINK || this == SYMLINK || this == CLONE;
+    }
+}
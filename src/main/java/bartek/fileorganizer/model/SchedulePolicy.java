@@ -0,0 +1,22 @@
+package bartek.fileorganizer.model;
+
+import java.util.List;
+
+/**
+ * Limits for heavy moves - files of at least {@code heavyFileBytes} or moves to another device.
+ * Heavy moves only run inside {@code heavyMoveWindows} ("HH:mm-HH:mm", may wrap past midnight;
+ * empty means any time) and are throttled to the given rates (0 means unlimited).
+ */
+public record SchedulePolicy(
+        List<String> heavyMoveWindows,
+        long heavyFileBytes,
+        double maxFilesPerSecond,
+        long maxBytesPerSecond
+) {
+
+    public SchedulePolicy {
+        if (heavyMoveWindows == null) {
+            heavyMoveWindows = List.of();
+        }
+    }
+}
@@ -12,6 +12,7 @@ module bartek.fileorganizer {
     requires tools.jackson.databind;
     requires java.desktop;
     requires java.naming;
+    requires jdk.httpserver;
     requires com.sun.jna;
     requires com.sun.jna.platform;
 
@@ -20,6 +21,7 @@ module bartek.fileorganizer {
 
     opens bartek.fileorganizer.model to tools.jackson.databind;
     opens bartek.fileorganizer.config to com.sun.jna , tools.jackson.databind;
+    opens bartek.fileorganizer.core to com.sun.jna;
 
 
 
@@ -0,0 +1,63 @@
+package bartek.fileorganizer.control;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ControlTokenTest {
+
+    @TempDir
+    Path dataDirectory;
+
+    @Test
+    void createsAnOwnerOnlyTokenAndKeepsIt() throws IOException {
+        String token = ControlToken.loadOrCreate(dataDirectory);
+
+        assertEquals(64, token.length());
+        assertEquals(token, ControlToken.loadOrCreate(dataDirectory));
+        assertEquals(List.of(ControlToken.FILE_NAME), fileNames(), "no temporary file may be left behind");
+        if (isPosix()) {
+            assertEquals("rw-------", PosixFilePermissions.toString(
+                    Files.getPosixFilePermissions(dataDirectory.resolve(ControlToken.FILE_NAME))));
+        }
+    }
+
+    @Test
+    void tightensPermissionsOfAnExistingToken() throws IOException {
+        Path file = Files.writeString(dataDirectory.resolve(ControlToken.FILE_NAME), "existing\n");
+        if (isPosix()) {
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-r--r--"));
+        }
+
+        assertEquals("existing", ControlToken.loadOrCreate(dataDirectory));
+        if (isPosix()) {
+            assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+        }
+    }
+
+    @Test
+    void rejectsAnEmptyToken() throws IOException {
+        Files.writeString(dataDirectory.resolve(ControlToken.FILE_NAME), "");
+        assertThrows(IOException.class, () -> ControlToken.loadOrCreate(dataDirectory));
+    }
+
+    private boolean isPosix() {
+        return Files.getFileAttributeView(dataDirectory, PosixFileAttributeView.class) != null;
+    }
+
+    private List<String> fileNames() throws IOException {
+        try (Stream<Path> files = Files.list(dataDirectory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.OverflowPolicy;
+import bartek.fileorganizer.model.Rule;
+import bartek.fileorganizer.model.RuleAction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArchiveExtractorTest {
+
+    private static final Rule ARCHIVES = new Rule(".zip", "archives", null, RuleAction.EXTRACT);
+    private static final Rule TEXT = new Rule(".txt", "text", null, null);
+
+    private static final Map<String, String> TRAVERSAL_ENTRIES = Map.of(
+            "../../escaped-slash.txt", "a",
+            "..\\..\\escaped-backslash.txt", "b",
+            "dir\\..\\..\\mixed/../escaped-mixed.txt", "c",
+            "..", "d",
+            "dir/.", "e",
+            "dir\\", "f");
+
+    @TempDir
+    Path workDir;
+
+    private Path sourceDir;
+    private ArchiveExtractor extractor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sourceDir = Files.createDirectory(workDir.resolve("source"));
+        extractor = new ArchiveExtractor(sourceDir, new RuleMatcher(List.of(ARCHIVES, TEXT), false),
+                new EventLog(workDir.resolve("events.jsonl"), OverflowPolicy.DROP), message -> {});
+    }
+
+    @Test
+    void zipEntriesCannotEscapeTheTarget() throws IOException {
+        Path archive = sourceDir.resolve("crafted.zip");
+        Files.write(archive, zip(TRAVERSAL_ENTRIES));
+
+        assertEquals(3, extractor.extract(archive, ARCHIVES));
+        assertOnlyFlattenedEntries();
+    }
+
+    @Test
+    void tarEntriesCannotEscapeTheTarget() throws IOException {
+        Path archive = sourceDir.resolve("crafted.tar");
+        Files.write(archive, tar(TRAVERSAL_ENTRIES));
+
+        assertEquals(3, extractor.extract(archive, new Rule(".tar", "archives", null, RuleAction.EXTRACT)));
+        assertOnlyFlattenedEntries();
+    }
+
+    @Test
+    void roundTripsZipTarAndTarGz() throws IOException {
+        String longName = "folder/" + "n".repeat(150) + ".txt";
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("readme.txt", "hello");
+        entries.put(longName, "long");
+        entries.put("images/photo.jpg", "jpeg");
+
+        Path zip = Files.write(sourceDir.resolve("bundle.zip"), zip(entries));
+        assertEquals(3, extractor.extract(zip, ARCHIVES));
+
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "././@LongLink", 'L', (longName + "\0").getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, longName, '0', bytes("long"));
+        writeTarEntry(tar, "PaxHeaders/readme", 'x', bytes(TarReaderTest.paxRecord("path", "pax/" + "p".repeat(150) + ".txt")));
+        writeTarEntry(tar, "truncated-ustar-name", '0', bytes("pax"));
+        writeTarEntry(tar, "readme.txt", '0', bytes("hello"));
+        tar.write(new byte[1024]);
+        Path plainTar = Files.write(sourceDir.resolve("bundle.tar"), tar.toByteArray());
+        Rule tarRule = new Rule(".tar", "archives", null, RuleAction.EXTRACT);
+        assertEquals(3, extractor.extract(plainTar, tarRule));
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(tar.toByteArray());
+        }
+        Path tarGz = Files.write(sourceDir.resolve("bundle.tar.gz"), gzipped.toByteArray());
+        assertEquals(3, extractor.extract(tarGz, new Rule(".tar.gz", "archives", null, RuleAction.EXTRACT)));
+
+        Path textDir = sourceDir.resolve("text");
+        String flatLongName = "n".repeat(150) + ".txt";
+        String paxName = "p".repeat(150) + ".txt";
+        assertEquals("hello", Files.readString(textDir.resolve("readme.txt")));
+        assertEquals("hello", Files.readString(textDir.resolve("readme (1).txt")));
+        assertEquals("hello", Files.readString(textDir.resolve("readme (2).txt")));
+        assertEquals("long", Files.readString(textDir.resolve(flatLongName)));
+        assertEquals("long", Files.readString(textDir.resolve("n".repeat(150) + " (1).txt")));
+        assertEquals("pax", Files.readString(textDir.resolve(paxName)));
+        assertEquals("pax", Files.readString(textDir.resolve("p".repeat(150) + " (1).txt")));
+        assertEquals("jpeg", Files.readString(sourceDir.resolve("archives").resolve("bundle").resolve("photo.jpg")));
+        assertNoPartialFiles();
+    }
+
+    @Test
+    void failedExtractionLeavesNoPartialFile() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("first.txt", "complete");
+        entries.put("second.txt", "x".repeat(200_000));
+        byte[] tar = tar(entries);
+        Path truncated = Files.write(sourceDir.resolve("broken.tar"), Arrays.copyOf(tar, 100_000));
+
+        assertThrows(IOException.class,
+                () -> extractor.extract(truncated, new Rule(".tar", "archives", null, RuleAction.EXTRACT)));
+        assertEquals("complete", Files.readString(sourceDir.resolve("text").resolve("first.txt")));
+        assertFalse(Files.exists(sourceDir.resolve("text").resolve("second.txt")));
+        assertNoPartialFiles();
+    }
+
+    private void assertNoPartialFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(sourceDir)) {
+            List<Path> partial = files.filter(file -> file.getFileName().toString().endsWith(".part")).toList();
+            assertEquals(List.of(), partial);
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void assertOnlyFlattenedEntries() throws IOException {
+        Path textDir = sourceDir.resolve("text");
+        assertEquals("a", Files.readString(textDir.resolve("escaped-slash.txt")));
+        assertEquals("b", Files.readString(textDir.resolve("escaped-backslash.txt")));
+        assertEquals("c", Files.readString(textDir.resolve("escaped-mixed.txt")));
+        try (Stream<Path> files = Files.walk(workDir)) {
+            List<String> written = files.filter(Files::isRegularFile)
+                    .map(file -> workDir.relativize(file).toString().replace('\\', '/'))
+                    .filter(name -> !name.equals("events.jsonl") && !name.startsWith("source/crafted."))
+                    .sorted()
+                    .toList();
+            assertEquals(List.of("source/text/escaped-backslash.txt", "source/text/escaped-mixed.txt",
+                    "source/text/escaped-slash.txt"), written);
+        }
+        assertFalse(Files.exists(sourceDir.resolve("archives")), "nothing should fall back to the archive folder");
+        assertTrue(Files.isDirectory(textDir));
+    }
+
+    static byte[] zip(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static byte[] tar(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            writeTarEntry(bytes, entry.getKey(), '0', entry.getValue().getBytes(StandardCharsets.UTF_8));
+        }
+        bytes.write(new byte[1024]);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes one ustar header plus padded content. Names longer than the header field are cut,
+     * which is what a long-name or PAX entry in front of it makes up for.
+     */
+    static void writeTarEntry(OutputStream out, String name, char type, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 124, 12, content.length);
+        putOctal(header, 136, 12, 0);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        header[263] = '0';
+        header[264] = '0';
+
+        for (int i = 148; i < 156; i++) {
+            header[i] = ' ';
+        }
+        int checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        putOctal(header, 148, 7, checksum);
+
+        out.write(header);
+        out.write(content);
+        out.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        String octal = String.format("%0" + (length - 1) + "o", value);
+        System.arraycopy(octal.getBytes(StandardCharsets.US_ASCII), 0, header, offset, length - 1);
+    }
+}
@@ -0,0 +1,104 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.DurabilityPolicy;
+import bartek.fileorganizer.model.OverflowPolicy;
+import bartek.fileorganizer.model.Rule;
+import bartek.fileorganizer.model.RuleAction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchMoveExecutorTest {
+
+    @TempDir
+    Path sourceDir;
+
+    private BatchMoveExecutor executor;
+    private Path source;
+    private Path targetDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = new BatchMoveExecutor(sourceDir, DurabilityPolicy.NONE, new FileLinker(),
+                new EventLog(sourceDir.resolve("events.jsonl"), OverflowPolicy.DROP), message -> {});
+        source = Files.writeString(sourceDir.resolve("report.pdf"), "original");
+        targetDir = sourceDir.resolve("docs");
+    }
+
+    @Test
+    void hardlinkIsCreatedOnce() throws IOException {
+        Rule rule = new Rule(".pdf", "docs", null, RuleAction.HARDLINK);
+        assertEquals(1, run(rule));
+        assertEquals(0, run(rule));
+        assertEquals(List.of("report.pdf"), targetNames());
+        assertTrue(Files.isSameFile(source, targetDir.resolve("report.pdf")));
+    }
+
+    @Test
+    void symlinkIsCreatedOnce() throws IOException {
+        Rule rule = new Rule(".pdf", "docs", null, RuleAction.SYMLINK);
+        assertEquals(1, run(rule));
+        assertEquals(0, run(rule));
+        assertEquals(List.of("report.pdf"), targetNames());
+    }
+
+    @Test
+    void lookalikeFileIsNotMistakenForTheLink() throws IOException {
+        // Same name, size and modification time, but a different file with different content
+        Files.createDirectories(targetDir);
+        Path lookalike = Files.writeString(targetDir.resolve("report.pdf"), "imposter");
+        Files.setLastModifiedTime(lookalike, Files.getLastModifiedTime(source));
+        Rule rule = new Rule(".pdf", "docs", null, RuleAction.HARDLINK);
+
+        assertEquals(1, run(rule));
+        assertEquals(List.of("report (1).pdf", "report.pdf"), targetNames());
+        assertTrue(Files.isSameFile(source, targetDir.resolve("report (1).pdf")));
+
+        // The numbered link from the first run is recognized, so no "report (2).pdf"
+        assertEquals(0, run(rule));
+        assertEquals(List.of("report (1).pdf", "report.pdf"), targetNames());
+    }
+
+    @Test
+    void symlinkToAnotherFileIsNotMistakenForTheLink() throws IOException {
+        Files.createDirectories(targetDir);
+        Path other = Files.writeString(sourceDir.resolve("other.pdf"), "original");
+        Files.createSymbolicLink(targetDir.resolve("report.pdf"), other.toAbsolutePath());
+        Rule rule = new Rule(".pdf", "docs", null, RuleAction.SYMLINK);
+
+        assertEquals(1, run(rule));
+        assertEquals(source.toAbsolutePath(), Files.readSymbolicLink(targetDir.resolve("report (1).pdf")));
+        assertEquals(0, run(rule));
+    }
+
+    @Test
+    void copyIsRecognizedByContent() throws IOException {
+        Files.createDirectories(targetDir);
+        Path copy = Files.copy(source, targetDir.resolve("report.pdf"));
+        Files.setLastModifiedTime(copy, FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() + 1000));
+        Rule rule = new Rule(".pdf", "docs", null, RuleAction.CLONE);
+
+        assertEquals(0, run(rule));
+        assertEquals(List.of("report.pdf"), targetNames());
+    }
+
+    private int run(Rule rule) {
+        return executor.execute(List.of(new BatchMoveExecutor.PendingMove(source, rule)));
+    }
+
+    private List<String> targetNames() throws IOException {
+        try (Stream<Path> files = Files.list(targetDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventLogTest {
+
+    private static final int OVERFLOW = 100;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void dropPolicyCountsDroppedEventsWithoutLoggingThem() throws IOException {
+        Path file = dir.resolve("events.jsonl");
+        EventLog eventLog = new EventLog(file, OverflowPolicy.DROP);
+        // Not started yet, so nothing drains the ring
+        fill(eventLog, EventLog.CAPACITY + OVERFLOW);
+        assertEquals(OVERFLOW, eventLog.droppedEvents());
+
+        eventLog.start();
+        eventLog.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(EventLog.CAPACITY, lines.size());
+        assertTrue(lines.stream().noneMatch(line -> line.contains("\"DROPPED\"")));
+        assertEquals(OVERFLOW, eventLog.droppedEvents());
+    }
+
+    @Test
+    void summarizePolicyLogsHowManyEventsWereDropped() throws IOException {
+        Path file = dir.resolve("events.jsonl");
+        EventLog eventLog = new EventLog(file, OverflowPolicy.SUMMARIZE);
+        fill(eventLog, EventLog.CAPACITY + OVERFLOW);
+
+        eventLog.start();
+        eventLog.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(EventLog.CAPACITY + 1, lines.size());
+        assertEquals(1, lines.stream()
+                .filter(line -> line.contains("\"type\":\"DROPPED\"") && line.contains(OVERFLOW + " events dropped"))
+                .count());
+    }
+
+    @Test
+    void rollsOverByEncodedSize() throws IOException {
+        Path file = dir.resolve("events.jsonl");
+        long maxBytes = 4096;
+        EventLog eventLog = new EventLog(file, OverflowPolicy.DROP, maxBytes);
+        eventLog.start();
+        // Two bytes per character in UTF-8, so counting characters would overshoot the limit
+        for (int i = 0; i < 200; i++) {
+            eventLog.record(EventLog.Type.MOVED, "żółć-" + i + ".txt", "ąęś");
+        }
+        eventLog.close();
+
+        for (Path log : List.of(file, dir.resolve("events.1.jsonl"), dir.resolve("events.2.jsonl"),
+                dir.resolve("events.3.jsonl"))) {
+            assertTrue(Files.exists(log), log + " missing");
+            assertTrue(Files.size(log) <= maxBytes, log + " is " + Files.size(log) + " bytes");
+        }
+        assertFalse(Files.exists(dir.resolve("events." + (EventLog.MAX_ROLLED_FILES + 1) + ".jsonl")));
+        assertTrue(Files.readString(file).contains("żółć-199.txt"));
+    }
+
+    @Test
+    void idleWriterWakesUpForNewEvents() throws Exception {
+        Path file = dir.resolve("events.jsonl");
+        EventLog eventLog = new EventLog(file, OverflowPolicy.DROP);
+        eventLog.start();
+        try {
+            // Long enough for the writer to be parked with nothing to do
+            Thread.sleep(200);
+            eventLog.record(EventLog.Type.DETECTED, Path.of("late.txt"), null);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!(Files.exists(file) && Files.readString(file).contains("late.txt"))) {
+                assertTrue(System.nanoTime() < deadline, "event not written while the log is open");
+                Thread.sleep(10);
+            }
+        } finally {
+            eventLog.close();
+        }
+    }
+
+    private static void fill(EventLog eventLog, int count) {
+        for (int i = 0; i < count; i++) {
+            eventLog.record(EventLog.Type.DETECTED, Path.of("file-" + i + ".txt"), null);
+        }
+    }
+}
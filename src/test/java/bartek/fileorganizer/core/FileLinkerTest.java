@@ -0,0 +1,203 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.core.FileLinker.Method;
+import bartek.fileorganizer.model.RuleAction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttributeView;
+import java.nio.file.attribute.FileStoreAttributeView;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileLinkerTest {
+
+    @TempDir
+    Path dir;
+
+    private Path sourceDir;
+    private Path sameStoreDir;
+    private Path otherStoreDir;
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        sourceDir = Files.createDirectory(dir.resolve("source"));
+        sameStoreDir = Files.createDirectory(dir.resolve("same"));
+        otherStoreDir = Files.createDirectory(dir.resolve("other"));
+        source = Files.writeString(sourceDir.resolve("photo.jpg"), "pixels");
+    }
+
+    @Test
+    void hardlinkOnTheSameStore() throws IOException {
+        RecordingLinker linker = new RecordingLinker();
+        Path target = sameStoreDir.resolve("photo.jpg");
+
+        assertEquals(Method.HARDLINK, linker.link(source, target, RuleAction.HARDLINK));
+        assertTrue(Files.isSameFile(source, target));
+    }
+
+    @Test
+    void hardlinkAcrossStoresFallsBackToCopy() throws IOException {
+        RecordingLinker linker = new RecordingLinker();
+        Path target = otherStoreDir.resolve("photo.jpg");
+
+        assertEquals(Method.COPY, linker.link(source, target, RuleAction.HARDLINK));
+        // Neither a hard link nor a clone can cross file stores, so they are not even tried
+        assertEquals(List.of(Method.COPY), linker.attempts);
+        assertFalse(Files.isSameFile(source, target));
+        assertEquals("pixels", Files.readString(target));
+        // Copied timestamps may lose precision below a millisecond
+        assertEquals(Files.getLastModifiedTime(source).toMillis(), Files.getLastModifiedTime(target).toMillis());
+    }
+
+    @Test
+    void symlinkAcrossStoresStaysASymlink() throws IOException {
+        RecordingLinker linker = new RecordingLinker();
+        Path target = otherStoreDir.resolve("photo.jpg");
+
+        assertEquals(Method.SYMLINK, linker.link(source, target, RuleAction.SYMLINK));
+        assertEquals(source.toAbsolutePath(), Files.readSymbolicLink(target));
+    }
+
+    @Test
+    void unsupportedMethodIsSkippedForThatStoreOnly() throws IOException {
+        RecordingLinker linker = new RecordingLinker();
+        linker.unsupported.add(Method.HARDLINK);
+        linker.unsupported.add(Method.CLONE);
+
+        assertEquals(Method.COPY, linker.link(source, sameStoreDir.resolve("first.jpg"), RuleAction.HARDLINK));
+        assertEquals(List.of(Method.HARDLINK, Method.CLONE, Method.COPY), linker.attempts);
+
+        linker.attempts.clear();
+        assertEquals(Method.COPY, linker.link(source, sameStoreDir.resolve("second.jpg"), RuleAction.HARDLINK));
+        assertEquals(List.of(Method.COPY), linker.attempts);
+
+        // Another store has its own record, so the methods are tried there again
+        linker.attempts.clear();
+        linker.stores.put(sourceDir, linker.stores.get(otherStoreDir));
+        linker.unsupported.clear();
+        assertEquals(Method.HARDLINK, linker.link(source, otherStoreDir.resolve("third.jpg"), RuleAction.HARDLINK));
+        assertEquals(List.of(Method.HARDLINK), linker.attempts);
+    }
+
+    @Test
+    void fileSpecificFailureIsRetriedNextTime() throws IOException {
+        RecordingLinker linker = new RecordingLinker();
+        linker.failOnce.add(Method.HARDLINK);
+        linker.unsupported.add(Method.CLONE);
+
+        assertEquals(Method.COPY, linker.link(source, sameStoreDir.resolve("first.jpg"), RuleAction.HARDLINK));
+        linker.attempts.clear();
+        assertEquals(Method.HARDLINK, linker.link(source, sameStoreDir.resolve("second.jpg"), RuleAction.HARDLINK));
+        assertEquals(List.of(Method.HARDLINK), linker.attempts);
+    }
+
+    /**
+     * Puts {@code other} on a file store of its own and lets tests make methods fail.
+     */
+    private class RecordingLinker extends FileLinker {
+
+        final Map<Path, FileStore> stores = new HashMap<>();
+        final Set<Method> unsupported = new HashSet<>();
+        final Set<Method> failOnce = new HashSet<>();
+        final List<Method> attempts = new ArrayList<>();
+
+        RecordingLinker() throws IOException {
+            FileStore real = Files.getFileStore(dir);
+            stores.put(sourceDir, real);
+            stores.put(sameStoreDir, real);
+            stores.put(otherStoreDir, new NamedStore("other"));
+        }
+
+        @Override
+        FileStore store(Path directory) {
+            return stores.get(directory);
+        }
+
+        @Override
+        boolean apply(Method method, Path source, Path target) throws IOException {
+            attempts.add(method);
+            if (unsupported.contains(method)) {
+                throw new UnsupportedOperationException(method + " not supported");
+            }
+            if (failOnce.remove(method)) {
+                throw new FileSystemException(target.toString(), null, "Operation not permitted");
+            }
+            return super.apply(method, source, target);
+        }
+    }
+
+    private static final class NamedStore extends FileStore {
+
+        private final String name;
+
+        NamedStore(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String type() {
+            return "test";
+        }
+
+        @Override
+        public boolean isReadOnly() {
+            return false;
+        }
+
+        @Override
+        public long getTotalSpace() {
+            return 0;
+        }
+
+        @Override
+        public long getUsableSpace() {
+            return 0;
+        }
+
+        @Override
+        public long getUnallocatedSpace() {
+            return 0;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(Class<? extends FileAttributeView> type) {
+            return false;
+        }
+
+        @Override
+        public boolean supportsFileAttributeView(String name) {
+            return false;
+        }
+
+        @Override
+        public <V extends FileStoreAttributeView> V getFileStoreAttributeView(Class<V> type) {
+            return null;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) {
+            return null;
+        }
+    }
+}
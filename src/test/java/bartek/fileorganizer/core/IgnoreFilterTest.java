@@ -0,0 +1,67 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.AppConfig;
+import bartek.fileorganizer.model.IgnorePolicy;
+import bartek.fileorganizer.model.Rule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IgnoreFilterTest {
+
+    private static IgnoreFilter filter(List<String> globs) {
+        return new IgnoreFilter(new AppConfig("/tmp/source", List.of(new Rule(".pdf", "docs", null, null)), false,
+                null, null, 0, null, null, new IgnorePolicy(globs, null, null, 0, 0, 0, false)));
+    }
+
+    private static boolean globMatches(String glob, String name) {
+        return Pattern.compile(IgnoreFilter.globToRegex(glob), Pattern.CASE_INSENSITIVE).matcher(name).matches();
+    }
+
+    @Test
+    void translatesGlobSyntax() {
+        assertTrue(globMatches("*.bak", "notes.BAK"));
+        assertFalse(globMatches("*.bak", "notes.bak.txt"));
+        assertTrue(globMatches("a?c", "abc"));
+        assertFalse(globMatches("a?c", "abbc"));
+        assertTrue(globMatches("IMG_[0-9]*.{jpg,png}", "IMG_1.png"));
+        assertFalse(globMatches("IMG_[0-9]*.{jpg,png}", "IMG_x.jpg"));
+        assertTrue(globMatches("[!a]x", "bx"));
+        assertFalse(globMatches("[!a]x", "ax"));
+    }
+
+    @Test
+    void escapesRegexCharacters() {
+        assertTrue(globMatches("a+b(1).txt", "a+b(1).txt"));
+        assertFalse(globMatches("a.txt", "abtxt"));
+        assertTrue(globMatches("a}", "a}"));
+        assertTrue(globMatches("[a&&b]x", "&x"));
+        assertTrue(globMatches("[\\^]x", "^x"));
+        assertTrue(globMatches("[[]x", "[x"));
+    }
+
+    @Test
+    void skipsInvalidGlobsAndKeepsTheRest() {
+        List<String> globs = List.of("*.{jpg,png", "*.bak", "[]x", "a{b{c}}");
+        assertEquals(List.of("*.{jpg,png", "[]x", "a{b{c}}"), IgnoreFilter.invalidGlobs(globs));
+
+        IgnoreFilter filter = filter(globs);
+        assertTrue(filter.ignoresName("old.bak"));
+        assertFalse(filter.ignoresName("photo.jpg"));
+    }
+
+    @Test
+    void appliesDefaults() {
+        IgnoreFilter filter = filter(List.of());
+        assertTrue(filter.ignoresName(".hidden"));
+        assertTrue(filter.ignoresName("Desktop.ini"));
+        assertTrue(filter.ignoresName("movie.mkv.crdownload"));
+        assertTrue(filter.ignoresName("docs"));
+        assertFalse(filter.ignoresName("report.pdf"));
+    }
+}
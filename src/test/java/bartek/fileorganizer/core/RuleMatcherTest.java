@@ -0,0 +1,65 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.Rule;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleMatcherTest {
+
+    private static final List<Rule> RULES = List.of(
+            new Rule(".txt", "text", null, null),
+            new Rule(null, "reports", "report", null),
+            new Rule(".pdf", "docs", null, null),
+            new Rule(".tar.gz", "archives", null, null),
+            new Rule(".gz", "compressed", null, null),
+            new Rule(".jpg", "images", null, null));
+
+    private static final List<String> PROBES = List.of(
+            "a.txt", "report.txt", "report.pdf", "b.pdf", "c.tar.gz", "report.tar.gz", "d.gz",
+            "report.gz", "e.jpg", "report.jpg", "f.png", "report", "g.txt.gz", "h.gz.tar");
+
+    @Test
+    void mayOverlapOnlyFailsForDisjointExtensions() {
+        assertFalse(RuleMatcher.mayOverlap(RULES.get(0), RULES.get(2)));
+        assertTrue(RuleMatcher.mayOverlap(RULES.get(3), RULES.get(4)));
+        assertTrue(RuleMatcher.mayOverlap(RULES.get(4), RULES.get(3)));
+        assertTrue(RuleMatcher.mayOverlap(RULES.get(0), RULES.get(1)));
+        assertTrue(RuleMatcher.mayOverlap(new Rule("", "x", null, null), RULES.get(5)));
+    }
+
+    @Test
+    void firstMatchStillWinsAfterReorder() {
+        RuleMatcher reference = new RuleMatcher(RULES, false);
+        RuleMatcher adaptive = new RuleMatcher(RULES, true);
+
+        // Enough hits on the last rules to trigger several reorders
+        for (int i = 0; i < 5000; i++) {
+            adaptive.match(i % 3 == 0 ? "x.gz" : "y.jpg");
+        }
+
+        List<Rule> order = adaptive.evaluationOrder();
+        assertNotEquals(RULES, order, "hot rules should have moved forward");
+        // .jpg cannot pass the extension-less "report" rule, but it can pass .pdf and the archives
+        assertTrue(order.indexOf(RULES.get(5)) < order.indexOf(RULES.get(2)));
+
+        for (String name : PROBES) {
+            assertEquals(reference.match(name), adaptive.match(name), name);
+        }
+
+        // Overlapping rules keep their original relative order
+        for (int i = 0; i < RULES.size(); i++) {
+            for (int j = i + 1; j < RULES.size(); j++) {
+                if (RuleMatcher.mayOverlap(RULES.get(i), RULES.get(j))) {
+                    assertTrue(order.indexOf(RULES.get(i)) < order.indexOf(RULES.get(j)),
+                            RULES.get(i).extension() + " before " + RULES.get(j).extension());
+                }
+            }
+        }
+    }
+}
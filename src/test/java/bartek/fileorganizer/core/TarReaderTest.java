@@ -0,0 +1,107 @@
+package bartek.fileorganizer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static bartek.fileorganizer.core.ArchiveExtractorTest.writeTarEntry;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TarReaderTest {
+
+    private static final String LONG_NAME = "deeply/nested/" + "x".repeat(180) + ".txt";
+
+    @Test
+    void readsGnuLongNames() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "././@LongLink", 'L', (LONG_NAME + "\0").getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, LONG_NAME, '0', bytes("long"));
+        writeTarEntry(tar, "short.txt", '0', bytes("short"));
+        tar.write(new byte[1024]);
+
+        assertEquals(Map.of(LONG_NAME, "long", "short.txt", "short"), readAll(tar.toByteArray()));
+    }
+
+    @Test
+    void readsPaxPathAndSize() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "PaxHeaders/global", 'g', bytes(paxRecord("comment", "ignored")));
+        writeTarEntry(tar, "PaxHeaders/entry", 'x',
+                bytes(paxRecord("path", LONG_NAME) + paxRecord("mtime", "1.5") + paxRecord("size", "3")));
+        int entryHeader = tar.size();
+        writeTarEntry(tar, LONG_NAME, '0', bytes("pax"));
+        writeTarEntry(tar, "after.txt", '0', bytes("after"));
+        tar.write(new byte[1024]);
+        byte[] archive = tar.toByteArray();
+        // The PAX size wins over the header, as for entries too large for the octal field
+        setSize(archive, entryHeader, 0);
+
+        assertEquals(Map.of(LONG_NAME, "pax", "after.txt", "after"), readAll(archive));
+    }
+
+    @Test
+    void rejectsOversizedLongNames() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        // Only the header claims a huge name; reading it must fail before anything is allocated
+        writeTarEntry(tar, "././@LongLink", 'L', new byte[0]);
+        byte[] archive = tar.toByteArray();
+        setSize(archive, 0, 3L << 30);
+
+        IOException e = assertThrows(IOException.class, () -> readAll(archive));
+        assertEquals("Tar metadata entry of " + (3L << 30) + " bytes exceeds " + TarReader.MAX_METADATA_BYTES, e.getMessage());
+    }
+
+    @Test
+    void rejectsNegativeSizes() throws IOException {
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "negative.txt", '0', new byte[0]);
+        byte[] archive = tar.toByteArray();
+        // Base-256 size with every bit set, which overflows to a negative long
+        for (int i = 124; i < 136; i++) {
+            archive[i] = (byte) 0xff;
+        }
+
+        assertThrows(IOException.class, () -> readAll(archive));
+    }
+
+    static String paxRecord(String key, String value) {
+        String body = " " + key + "=" + value + "\n";
+        int length = body.getBytes(StandardCharsets.UTF_8).length;
+        int digits = String.valueOf(length).length();
+        // The length prefix counts its own digits
+        while (String.valueOf(length + digits).length() != digits) {
+            digits++;
+        }
+        return (length + digits) + body;
+    }
+
+    private static Map<String, String> readAll(byte[] archive) throws IOException {
+        TarReader reader = new TarReader(new ByteArrayInputStream(archive));
+        Map<String, String> entries = new LinkedHashMap<>();
+        List<String> names = new ArrayList<>();
+        String name;
+        while ((name = reader.nextEntry()) != null) {
+            names.add(name);
+            entries.put(name, new String(reader.entryStream().readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(entries.size(), names.size(), "duplicate entries in " + names);
+        return entries;
+    }
+
+    private static void setSize(byte[] archive, int headerOffset, long size) {
+        byte[] octal = String.format("%011o", size).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(octal, 0, archive, headerOffset + 124, 11);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,146 @@
+package bartek.fileorganizer.core;
+
+import bartek.fileorganizer.model.CoordinationPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WorkCoordinatorTest {
+
+    private static final long LEASE_SECONDS = 60;
+
+    @TempDir
+    Path leaseDir;
+
+    private WorkCoordinator coordinator(String instanceId, int shardCount, int shardIndex, long leaseSeconds) {
+        return new WorkCoordinator(new CoordinationPolicy(leaseDir.toString(), instanceId, shardCount, shardIndex, leaseSeconds));
+    }
+
+    @Test
+    void everyFileHasExactlyOneOwner() {
+        WorkCoordinator first = coordinator("first", 2, 0, LEASE_SECONDS);
+        WorkCoordinator second = coordinator("second", 2, 1, LEASE_SECONDS);
+
+        int ownedByFirst = 0;
+        for (int i = 0; i < 1000; i++) {
+            Path file = Path.of("file-" + i + ".txt");
+            assertNotEquals(first.owns(file), second.owns(file), file.toString());
+            if (first.owns(file)) {
+                ownedByFirst++;
+            }
+        }
+        assertTrue(ownedByFirst > 400 && ownedByFirst < 600, "uneven split: " + ownedByFirst);
+    }
+
+    @Test
+    void onlyOneConcurrentClaimWins() throws Exception {
+        WorkCoordinator first = coordinator("first", 1, 0, LEASE_SECONDS);
+        WorkCoordinator second = coordinator("second", 1, 0, LEASE_SECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 200; i++) {
+                Path file = Path.of("contended-" + i + ".txt");
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<Boolean> firstWon = executor.submit(() -> {
+                    barrier.await();
+                    return first.tryClaim(file);
+                });
+                Future<Boolean> secondWon = executor.submit(() -> {
+                    barrier.await();
+                    return second.tryClaim(file);
+                });
+                assertTrue(firstWon.get() ^ secondWon.get(), file.toString());
+                first.release(file);
+                second.release(file);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void expiredClaimIsTakenOverAndStaysWithTheNewOwner() throws IOException {
+        WorkCoordinator first = coordinator("first", 1, 0, LEASE_SECONDS);
+        WorkCoordinator second = coordinator("second", 1, 0, LEASE_SECONDS);
+        Path file = Path.of("abandoned.txt");
+
+        assertTrue(first.tryClaim(file));
+        assertFalse(second.tryClaim(file));
+
+        Files.setLastModifiedTime(claimFile(), FileTime.from(Instant.now().minusSeconds(2 * LEASE_SECONDS)));
+        assertTrue(second.tryClaim(file));
+        String secondsClaim = Files.readString(claimFile());
+
+        // The previous owner finishing late must not remove the new owner's claim
+        first.release(file);
+        assertEquals(secondsClaim, Files.readString(claimFile()));
+        assertFalse(first.tryClaim(file));
+
+        second.release(file);
+        assertTrue(listClaims().isEmpty());
+    }
+
+    @Test
+    void releaseByNonOwnerLeavesTheClaimAlone() throws IOException {
+        WorkCoordinator owner = coordinator("owner", 1, 0, LEASE_SECONDS);
+        WorkCoordinator other = coordinator("other", 1, 0, LEASE_SECONDS);
+        Path file = Path.of("held.txt");
+
+        assertTrue(owner.tryClaim(file));
+        other.release(file);
+        assertEquals(1, listClaims().size());
+        assertFalse(other.tryClaim(file));
+    }
+
+    @Test
+    void renewalKeepsAClaimAliveThroughAMissingTick() throws Exception {
+        WorkCoordinator owner = coordinator("owner", 1, 0, 1);
+        WorkCoordinator other = coordinator("other", 1, 0, 1);
+        Path file = Path.of("long-running.bin");
+        assertTrue(owner.tryClaim(file));
+
+        // Like another instance renaming the claim away while checking it, across one renewal
+        Path claim = claimFile();
+        Path aside = claim.resolveSibling("aside");
+        Files.move(claim, aside);
+        Thread.sleep(500);
+        Files.move(aside, claim);
+
+        Thread.sleep(2000);
+        assertFalse(other.tryClaim(file), "renewed claim must not look expired");
+
+        owner.release(file);
+        assertTrue(listClaims().isEmpty(), "owner must still release the claim");
+        assertTrue(other.tryClaim(file));
+        other.release(file);
+    }
+
+    private Path claimFile() throws IOException {
+        List<Path> claims = listClaims();
+        assertEquals(1, claims.size(), claims.toString());
+        return claims.get(0);
+    }
+
+    private List<Path> listClaims() throws IOException {
+        try (Stream<Path> files = Files.list(leaseDir)) {
+            return new ArrayList<>(files.filter(path -> path.getFileName().toString().endsWith(".claim")).toList());
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package bartek.fileorganizer.harness;
+
+import bartek.fileorganizer.core.DirectoryWatcher;
+import bartek.fileorganizer.core.EventLog;
+import bartek.fileorganizer.core.FileProcessor;
+import bartek.fileorganizer.core.ProcessingScheduler;
+import bartek.fileorganizer.core.RuleMatcher;
+import bartek.fileorganizer.model.AppConfig;
+import bartek.fileorganizer.model.DurabilityPolicy;
+import bartek.fileorganizer.model.OverflowPolicy;
+import bartek.fileorganizer.model.Rule;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Soak and load harness: replays a synthetic file-arrival workload (bursts of small files, partial writes,
+ * renames from temporary names and huge files) against a temporary folder watched by a real
+ * {@link DirectoryWatcher} and {@link FileProcessor}. It reports end-to-end latency percentiles, lost,
+ * duplicated and truncated files and peak heap, and fails when files are lost, duplicated
+ * or truncated, or when latency is above the configured limits.
+ * Lives with the tests so it does not ship, and runs through {@link SoakHarnessTest} or its own {@code main}:
+ *
+ * <pre>mvn test -Dtest=SoakHarnessTest -Dsoak="--files=20000 --rate=5000"</pre>
+ */
+@Slf4j
+public class SoakHarness {
+
+    private static final String SMALL_EXTENSION = ".txt";
+    private static final String HUGE_EXTENSION = ".bin";
+    private static final int SMALL_FILE_BYTES = 4 * 1024;
+    private static final int PARTIAL_CHUNKS = 4;
+    private static final long PARTIAL_CHUNK_PAUSE_MILLIS = 20;
+
+    private final Workload workload;
+    private final Map<String, Long> arrivedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> handledAt = new ConcurrentHashMap<>();
+
+    SoakHarness(Workload workload) {
+        this.workload = workload;
+    }
+
+    /**
+     * Workload settings, given on the command line as {@code --name=value}.
+     *
+     * @param rate              file arrivals per second, 0 for as fast as the writers can go
+     * @param partialPercent    files written in several chunks with pauses in between
+     * @param renamePercent     files written under a {@code .part} name and renamed when complete
+     * @param hugePercent       files of {@code hugeBytes} instead of a few kilobytes
+     * @param maxP99Millis      absolute p99 latency limit, 0 to disable
+     * @param baseline          properties file with the p99 of a previous run to compare against
+     * @param maxRegressionPercent how much slower than the baseline p99 a run may be
+     */
+    record Workload(
+            int files,
+            int rate,
+            int writers,
+            int partialPercent,
+            int renamePercent,
+            int hugePercent,
+            long hugeBytes,
+            DurabilityPolicy durability,
+            long timeoutSeconds,
+            long maxP99Millis,
+            Path baseline,
+            int maxRegressionPercent,
+            boolean writeBaseline,
+            boolean keep
+    ) {
+        static Workload parse(String[] args) {
+            Map<String, String> options = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unexpected argument: " + arg);
+                }
+                int equals = arg.indexOf('=');
+                options.put(equals < 0 ? arg.substring(2) : arg.substring(2, equals), equals < 0 ? "true" : arg.substring(equals + 1));
+            }
+            String baseline = options.remove("baseline");
+            Workload workload = new Workload(
+                    Integer.parseInt(options.getOrDefault("files", "10000")),
+                    Integer.parseInt(options.getOrDefault("rate", "2000")),
+                    Integer.parseInt(options.getOrDefault("writers", "16")),
+                    Integer.parseInt(options.getOrDefault("partial-percent", "5")),
+                    Integer.parseInt(options.getOrDefault("rename-percent", "10")),
+                    Integer.parseInt(options.getOrDefault("huge-percent", "0")),
+                    Long.parseLong(options.getOrDefault("huge-bytes", String.valueOf(64L * 1024 * 1024))),
+                    DurabilityPolicy.valueOf(options.getOrDefault("durability", "NONE")),
+                    Long.parseLong(options.getOrDefault("timeout-seconds", "120")),
+                    Long.parseLong(options.getOrDefault("max-p99-ms", "0")),
+                    baseline == null ? null : Path.of(baseline),
+                    Integer.parseInt(options.getOrDefault("max-regression-percent", "50")),
+                    Boolean.parseBoolean(options.getOrDefault("write-baseline", "false")),
+                    Boolean.parseBoolean(options.getOrDefault("keep", "false")));
+
+            options.keySet().removeAll(List.of("files", "rate", "writers", "partial-percent", "rename-percent",
+                    "huge-percent", "huge-bytes", "durability", "timeout-seconds", "max-p99-ms",
+                    "max-regression-percent", "write-baseline", "keep"));
+            if (!options.isEmpty()) {
+                throw new IllegalArgumentException("Unknown options: " + options.keySet());
+            }
+            return workload;
+        }
+    }
+
+    record Report(int expected, int handled, int lost, int duplicates, int truncated,
+                  long p50Millis, long p95Millis, long p99Millis, long maxMillis, long peakHeapBytes) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Workload workload;
+        try {
+            workload = Workload.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+
+        Report report = new SoakHarness(workload).run();
+        System.exit(evaluate(workload, report) ? 0 : 1);
+    }
+
+    Report run() throws IOException, InterruptedException {
+        Path workDir = Files.createTempDirectory("fileorganizer-soak");
+        Path sourceDir = Files.createDirectory(workDir.resolve("source"));
+        List<Rule> rules = List.of(
+                new Rule(SMALL_EXTENSION, "small", null, null),
+                new Rule(HUGE_EXTENSION, "huge", null, null));
+        AppConfig config = new AppConfig(sourceDir.toString(), rules, false, workload.durability(),
+                OverflowPolicy.SUMMARIZE, 0, null, null, null);
+
+        TimingEventLog eventLog = new TimingEventLog(workDir.resolve("events.jsonl"));
+        ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+        FileProcessor processor = new FileProcessor(config, new RuleMatcher(rules, false), eventLog, workers, message -> {});
+        ProcessingScheduler scheduler = new ProcessingScheduler(processor, null, sourceDir, workDir.resolve("deferred_queue.txt"));
+        Thread watcherThread = new Thread(new DirectoryWatcher(config, scheduler, eventLog), "Watcher-Thread");
+        watcherThread.setDaemon(true);
+
+        eventLog.start();
+        scheduler.start();
+        watcherThread.start();
+        // The watcher registers asynchronously and has no readiness signal
+        Thread.sleep(500);
+
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        log.info("Replaying {} files at {}/s into {}", workload.files(), workload.rate() > 0 ? workload.rate() : "max", sourceDir);
+        Map<String, Long> expectedSizes = generate(sourceDir);
+        awaitHandled(expectedSizes.size());
+        // Late duplicates show up after the last original has been handled
+        Thread.sleep(1000);
+
+        watcherThread.interrupt();
+        scheduler.close();
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        eventLog.close();
+
+        long peakHeapBytes = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        Report report = buildReport(sourceDir, expectedSizes, peakHeapBytes);
+        if (workload.keep()) {
+            log.info("Kept {}", workDir);
+        } else {
+            deleteRecursively(workDir);
+        }
+        return report;
+    }
+
+    private Map<String, Long> generate(Path sourceDir) throws InterruptedException {
+        Map<String, Long> expectedSizes = new ConcurrentHashMap<>();
+        ExecutorService writers = Executors.newFixedThreadPool(workload.writers());
+        long start = System.nanoTime();
+
+        for (int i = 0; i < workload.files(); i++) {
+            int index = i;
+            long due = workload.rate() > 0 ? start + TimeUnit.SECONDS.toNanos(index) / workload.rate() : start;
+            writers.execute(() -> {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                try {
+                    writeFile(sourceDir, index, expectedSizes);
+                } catch (IOException e) {
+                    log.error("Writer failed for file {}: {}", index, e.getMessage());
+                }
+            });
+        }
+
+        writers.shutdown();
+        writers.awaitTermination(workload.timeoutSeconds(), TimeUnit.SECONDS);
+        return expectedSizes;
+    }
+
+    private void writeFile(Path sourceDir, int index, Map<String, Long> expectedSizes) throws IOException {
+        // Deterministic mix so runs with the same settings replay the same workload
+        int bucket = Math.floorMod(index * 7919, 100);
+        boolean huge = bucket < workload.hugePercent();
+        boolean partial = !huge && bucket < workload.hugePercent() + workload.partialPercent();
+        boolean renamed = !huge && !partial
+                && bucket < workload.hugePercent() + workload.partialPercent() + workload.renamePercent();
+
+        String name = String.format("f%07d%s", index, huge ? HUGE_EXTENSION : SMALL_EXTENSION);
+        long size = huge ? workload.hugeBytes() : SMALL_FILE_BYTES;
+        Path file = sourceDir.resolve(name);
+        expectedSizes.put(name, size);
+
+        if (renamed) {
+            Path temporary = sourceDir.resolve(name + ".part");
+            writeContent(temporary, size, 1);
+            arrivedAt.put(name, System.nanoTime());
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        } else if (partial) {
+            // The organizer must not touch a file while its writer holds the lock, so it arrives once unlocked
+            writeContent(file, size, PARTIAL_CHUNKS);
+            arrivedAt.put(name, System.nanoTime());
+        } else {
+            arrivedAt.put(name, System.nanoTime());
+            writeContent(file, size, 1);
+        }
+    }
+
+    private static void writeContent(Path file, long size, int chunks) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate((int) Math.min(size, 1024 * 1024));
+        long chunkSize = size / chunks;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             FileLock lock = chunks > 1 ? channel.lock() : null) {
+            long written = 0;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                long chunkEnd = chunk == chunks - 1 ? size : written + chunkSize;
+                while (written < chunkEnd) {
+                    block.clear().limit((int) Math.min(block.capacity(), chunkEnd - written));
+                    written += channel.write(block);
+                }
+                if (chunk < chunks - 1) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(PARTIAL_CHUNK_PAUSE_MILLIS));
+                }
+            }
+        }
+    }
+
+    private void awaitHandled(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(workload.timeoutSeconds());
+        int lastHandled = -1;
+        while (handledAt.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            if (handledAt.size() / 1000 != lastHandled / 1000) {
+                lastHandled = handledAt.size();
+                log.info("Handled {}/{}", lastHandled, expected);
+            }
+        }
+    }
+
+    private Report buildReport(Path sourceDir, Map<String, Long> expectedSizes, long peakHeapBytes) throws IOException {
+        int lost = 0;
+        int truncated = 0;
+        for (Map.Entry<String, Long> entry : expectedSizes.entrySet()) {
+            String name = entry.getKey();
+            Path target = sourceDir.resolve(name.endsWith(HUGE_EXTENSION) ? "huge" : "small").resolve(name);
+            if (!Files.exists(target)) {
+                lost++;
+            } else if (Files.size(target) != entry.getValue()) {
+                truncated++;
+            }
+        }
+
+        int duplicates = 0;
+        for (String folder : List.of("small", "huge")) {
+            Path targetDir = sourceDir.resolve(folder);
+            if (Files.isDirectory(targetDir)) {
+                try (Stream<Path> files = Files.list(targetDir)) {
+                    duplicates += (int) files.filter(file -> !expectedSizes.containsKey(file.getFileName().toString())).count();
+                }
+            }
+        }
+
+        long[] latencies = handledAt.entrySet().stream()
+                .filter(entry -> arrivedAt.containsKey(entry.getKey()))
+                .mapToLong(entry -> entry.getValue() - arrivedAt.get(entry.getKey()))
+                .sorted()
+                .toArray();
+
+        return new Report(expectedSizes.size(), handledAt.size(), lost, duplicates, truncated,
+                percentileMillis(latencies, 50), percentileMillis(latencies, 95), percentileMillis(latencies, 99),
+                percentileMillis(latencies, 100), peakHeapBytes);
+    }
+
+    private static long percentileMillis(long[] sortedNanos, int percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.length) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sortedNanos[Math.max(0, index)]);
+    }
+
+    static boolean evaluate(Workload workload, Report report) throws IOException {
+        System.out.printf("files      %d expected, %d handled%n", report.expected(), report.handled());
+        System.out.printf("lost       %d%n", report.lost());
+        System.out.printf("duplicates %d%n", report.duplicates());
+        System.out.printf("truncated  %d%n", report.truncated());
+        System.out.printf("latency    p50 %d ms, p95 %d ms, p99 %d ms, max %d ms%n",
+                report.p50Millis(), report.p95Millis(), report.p99Millis(), report.maxMillis());
+        System.out.printf("peak heap  %d MB%n", report.peakHeapBytes() / (1024 * 1024));
+
+        List<String> failures = new ArrayList<>();
+        if (report.lost() > 0) {
+            failures.add(report.lost() + " files lost");
+        }
+        if (report.duplicates() > 0) {
+            failures.add(report.duplicates() + " duplicate files");
+        }
+        if (report.truncated() > 0) {
+            failures.add(report.truncated() + " truncated files");
+        }
+        if (workload.maxP99Millis() > 0 && report.p99Millis() > workload.maxP99Millis()) {
+            failures.add("p99 " + report.p99Millis() + " ms above limit of " + workload.maxP99Millis() + " ms");
+        }
+
+        Path baseline = workload.baseline();
+        if (baseline != null && Files.exists(baseline) && !workload.writeBaseline()) {
+            Properties previous = new Properties();
+            try (InputStream in = Files.newInputStream(baseline)) {
+                previous.load(in);
+            }
+            long baselineP99 = Long.parseLong(previous.getProperty("p99Millis", "0"));
+            long allowed = baselineP99 + baselineP99 * workload.maxRegressionPercent() / 100;
+            if (baselineP99 > 0 && report.p99Millis() > allowed) {
+                failures.add("p99 " + report.p99Millis() + " ms regressed beyond " + allowed + " ms (baseline " + baselineP99 + " ms)");
+            }
+        }
+
+        if (failures.isEmpty() && baseline != null && workload.writeBaseline()) {
+            Properties current = new Properties();
+            current.setProperty("p50Millis", String.valueOf(report.p50Millis()));
+            current.setProperty("p95Millis", String.valueOf(report.p95Millis()));
+            current.setProperty("p99Millis", String.valueOf(report.p99Millis()));
+            try (OutputStream out = Files.newOutputStream(baseline)) {
+                current.store(out, "SoakHarness baseline");
+            }
+            System.out.println("baseline   written to " + baseline);
+        }
+
+        failures.forEach(failure -> System.out.println("FAILED     " + failure));
+        return failures.isEmpty();
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Notes when each file was moved to its target, on top of the normal event log.
+     */
+    private class TimingEventLog extends EventLog {
+
+        TimingEventLog(Path file) {
+            super(file, OverflowPolicy.SUMMARIZE);
+        }
+
+        @Override
+        public void record(Type type, Object subject, String detail) {
+            if (type == Type.MOVED && subject instanceof Path path) {
+                handledAt.putIfAbsent(path.getFileName().toString(), System.nanoTime());
+            }
+            super.record(type, subject, detail);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package bartek.fileorganizer.harness;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link SoakHarness} with the options given in the {@code soak} system property, skipped without it.
+ */
+@EnabledIfSystemProperty(named = "soak", matches = ".*")
+class SoakHarnessTest {
+
+    @Test
+    void soak() throws Exception {
+        String options = System.getProperty("soak").strip();
+        SoakHarness.Workload workload = SoakHarness.Workload.parse(options.isEmpty() ? new String[0] : options.split("\\s+"));
+        assertTrue(SoakHarness.evaluate(workload, new SoakHarness(workload).run()), "Soak run failed, see the report above");
+    }
+}